@@ -0,0 +1,61 @@
+package com.npckphtracker;
+
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.Item;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Inventory valuation on a full inventory, both when nothing changed and
+ * when a single slot changes between calls, as after picking up loot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InventoryValuationBenchmark
+{
+    private static final int INVENTORY_SIZE = 28;
+
+    private InventoryValuation valuation;
+    private Item[] unchanged;
+    private Item[] withLoot;
+    private Item[] withoutLoot;
+    private boolean looted;
+
+    @Setup
+    public void setUp()
+    {
+        valuation = new InventoryValuation(itemId -> itemId * 3 + 17);
+
+        unchanged = new Item[INVENTORY_SIZE];
+        withLoot = new Item[INVENTORY_SIZE];
+        withoutLoot = new Item[INVENTORY_SIZE];
+        for (int slot = 0; slot < INVENTORY_SIZE; slot++)
+        {
+            Item item = new Item(1_000 + slot, slot + 1);
+            unchanged[slot] = item;
+            withLoot[slot] = item;
+            withoutLoot[slot] = item;
+        }
+        withLoot[INVENTORY_SIZE - 1] = new Item(995, 2_500);
+        withoutLoot[INVENTORY_SIZE - 1] = new Item(-1, 0);
+    }
+
+    @Benchmark
+    public long unchangedInventory()
+    {
+        return valuation.update(unchanged);
+    }
+
+    @Benchmark
+    public long oneSlotChanged()
+    {
+        looted = !looted;
+        return valuation.update(looted ? withLoot : withoutLoot);
+    }
+}
@@ -0,0 +1,86 @@
+package com.npckphtracker;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Overlay rendering with every section shown, drawn into an offscreen image.
+ * Rendering an unchanged model is the per-frame cost; building a new model
+ * as well is what happens on the ticks the stats change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OverlayRenderBenchmark
+{
+    private static final int HALF_LIFE_TICKS = 10 * TickClock.TICKS_PER_MINUTE;
+
+    private final NpcKphTrackerConfig config = new NpcKphTrackerConfig()
+    {
+        @Override
+        public boolean showKphBreakdown()
+        {
+            return true;
+        }
+    };
+
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private NpcStats stats;
+    private SlayerTaskData slayerTask;
+    private OverlayViewModel model;
+    private NpcKphTrackerOverlay overlay;
+
+    @Setup
+    public void setUp()
+    {
+        image = new BufferedImage(400, 400, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+
+        NpcTrackingData data = new NpcTrackingData();
+        for (int tick = 0; tick < 2 * TickClock.TICKS_PER_HOUR; tick += 50)
+        {
+            data.addKill(tick, HALF_LIFE_TICKS);
+            data.addGpGain(tick, 4_200, HALF_LIFE_TICKS);
+        }
+        stats = data.publish(2 * TickClock.TICKS_PER_HOUR, config.recentTimeMinutes(), HALF_LIFE_TICKS, HALF_LIFE_TICKS, true);
+        slayerTask = new SlayerTaskData("Abyssal demons", 180, 60);
+
+        model = build();
+        overlay = new NpcKphTrackerOverlay(() -> model, new HandlerTimings());
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public Dimension renderUnchanged()
+    {
+        return overlay.render(graphics);
+    }
+
+    @Benchmark
+    public Dimension buildAndRender()
+    {
+        model = build();
+        return overlay.render(graphics);
+    }
+
+    private OverlayViewModel build()
+    {
+        return OverlayViewModel.build(config, "Abyssal demon", stats, slayerTask, "0:32:15");
+    }
+}
@@ -0,0 +1,62 @@
+package com.npckphtracker;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Slayer task matching on an abyssal demon task, which has several
+ * alternative names to check on an NPC's first sighting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SlayerMatcherBenchmark
+{
+    private static final int ABYSSAL_DEMONS = 42;
+    private static final int ABYSSAL_DEMON_ID = 415;
+    private static final int GOBLIN_ID = 3029;
+
+    private SlayerCreatureTable table;
+    private SlayerTaskMatcher matcher;
+    private int unseenId;
+
+    @Setup(Level.Trial)
+    public void loadTable()
+    {
+        table = SlayerCreatureTable.load();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        matcher = new SlayerTaskMatcher(table, ABYSSAL_DEMONS);
+        matcher.matches(ABYSSAL_DEMON_ID, "Abyssal demon");
+        matcher.matches(GOBLIN_ID, "Goblin");
+        unseenId = 100_000;
+    }
+
+    @Benchmark
+    public boolean taskNpcSeenBefore()
+    {
+        return matcher.matches(ABYSSAL_DEMON_ID, "Abyssal demon");
+    }
+
+    @Benchmark
+    public boolean otherNpcSeenBefore()
+    {
+        return matcher.matches(GOBLIN_ID, "Goblin");
+    }
+
+    @Benchmark
+    public boolean npcSeenFirstTime()
+    {
+        return matcher.matches(unseenId++, "Greater abyssal demon");
+    }
+}
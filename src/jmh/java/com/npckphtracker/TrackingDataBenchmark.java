@@ -0,0 +1,79 @@
+package com.npckphtracker;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Kill tracking for a single NPC with a realistic session, a long session and
+ * a week of kills that has not been expired yet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrackingDataBenchmark
+{
+    private static final int HISTORY_TICKS = 7 * 24 * TickClock.TICKS_PER_HOUR;
+    private static final int HALF_LIFE_TICKS = 10 * TickClock.TICKS_PER_MINUTE;
+
+    @Param({"500", "50000", "1000000"})
+    public int historyKills;
+
+    private NpcTrackingData data;
+    private int tick;
+
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        data = new NpcTrackingData();
+        // Spread the history evenly over the week before tick 0
+        for (int i = 0; i < historyKills; i++)
+        {
+            int killTick = (int) ((long) i * HISTORY_TICKS / historyKills) - HISTORY_TICKS;
+            data.addKill(killTick, HALF_LIFE_TICKS);
+            data.addGpGain(killTick, 1_000, HALF_LIFE_TICKS);
+        }
+        tick = 0;
+    }
+
+    @Benchmark
+    public NpcTrackingData addKill()
+    {
+        tick += 10;
+        data.addKill(tick, HALF_LIFE_TICKS);
+        return data;
+    }
+
+    @Benchmark
+    public double publishRecentKillsPerHour()
+    {
+        // Moving to the next tick forces a rebuild, as with the tracked NPC every tick
+        tick++;
+        return data.publish(tick, 60, HALF_LIFE_TICKS, HALF_LIFE_TICKS, true).getRecentKillsPerHour();
+    }
+
+    @Benchmark
+    public NpcTrackingData removeOldKills()
+    {
+        // Steady state: nothing old enough to expire, as on most ticks
+        data.removeOldKills(-HISTORY_TICKS - 1);
+        return data;
+    }
+
+    @Benchmark
+    public NpcTrackingData slidingWindow()
+    {
+        // One kill in, the oldest bucket out, keeping the history the same size
+        tick += HISTORY_TICKS / Math.max(1, historyKills);
+        data.addKill(tick, HALF_LIFE_TICKS);
+        data.removeOldKills(tick - HISTORY_TICKS);
+        return data;
+    }
+}
@@ -0,0 +1,370 @@
+package com.npckphtracker;
+
+import java.util.Arrays;
+
+/**
+ * Kill counts held in three tiers of buckets on primitive circular arrays:
+ * minute buckets for the last hour, ten-minute buckets for the last day and
+ * hourly buckets for the rest of the week. Buckets are addressed by their
+ * {@link TickClock} minute divided by the tier's width, so recording a kill is
+ * an index calculation and an increment with no hashing or boxing.
+ *
+ * As newer kills arrive, and as {@link #advanceTo(int)} moves time on without
+ * them, each tier slides forward and folds the buckets it drops into the next
+ * coarser tier, so an NPC never holds more than a few hundred counters however
+ * long its history is kept. Counts over a window add up the buckets it covers
+ * across tiers, taking a share of a coarse bucket that only partly overlaps
+ * it. Expiry trims a coarse bucket that straddles the cutoff to the share
+ * after it, and later shares of that bucket are taken over what is left.
+ */
+class KillTimeline
+{
+    static final int BUCKET_TICKS = TickClock.TICKS_PER_MINUTE;
+
+    private static final int TIERS = 3;
+    // Bucket width of each tier in minutes
+    private static final int[] TIER_MINUTES = {1, 10, 60};
+    // Slots per tier: over an hour, a day and a week, the largest retention setting
+    private static final int[] TIER_BUCKETS = {70, 150, 169};
+    private static final int UNANCHORED = Integer.MIN_VALUE;
+
+    /**
+     * Receives the non-empty buckets, oldest first.
+     */
+    interface BucketVisitor
+    {
+        void visit(int startTick, int kills);
+    }
+
+    // Allocated when a tier first gets kills
+    private final int[][] counts = new int[TIERS][];
+    // Index of each tier's oldest slot, or UNANCHORED while it has none
+    private final int[] low = {UNANCHORED, UNANCHORED, UNANCHORED};
+    // Minute each tier has expired up to, which can fall inside its oldest bucket
+    private final int[] expiredBefore = {UNANCHORED, UNANCHORED, UNANCHORED};
+    private int total;
+
+    static int bucketOf(int tick)
+    {
+        return Math.floorDiv(tick, BUCKET_TICKS);
+    }
+
+    /**
+     * Adds a kill to the bucket containing the tick. Kills older than the
+     * oldest retained bucket are folded into it rather than dropped.
+     */
+    void add(int tick)
+    {
+        add(tick, 1);
+    }
+
+    /**
+     * Adds several kills to the bucket containing the tick at once.
+     */
+    void add(int tick, int kills)
+    {
+        total += kills;
+        put(0, bucketOf(tick), kills);
+    }
+
+    /**
+     * Slides every tier up to the given tick, folding the buckets that have
+     * aged out of a tier into the next one even while no kills arrive.
+     */
+    void advanceTo(int nowTick)
+    {
+        int minute = bucketOf(nowTick);
+        for (int tier = 0; tier < TIERS; tier++)
+        {
+            int index = Math.floorDiv(minute, TIER_MINUTES[tier]);
+            if (low[tier] != UNANCHORED && index >= low[tier] + counts[tier].length)
+            {
+                slide(tier, lowFor(tier, index));
+            }
+        }
+    }
+
+    /**
+     * Drops every bucket that ends before the minute holding the cutoff and
+     * moves each tier's oldest slot up to it. In the coarser tiers the bucket
+     * straddling the cutoff keeps the share of its kills after the cutoff.
+     */
+    void expireBefore(int cutoffTick)
+    {
+        int cutoffMinute = bucketOf(cutoffTick);
+        for (int tier = 0; tier < TIERS; tier++)
+        {
+            if (low[tier] == UNANCHORED)
+            {
+                continue;
+            }
+
+            int width = TIER_MINUTES[tier];
+            int[] slots = counts[tier];
+            int cutoffIndex = Math.floorDiv(cutoffMinute, width);
+            int end = Math.min(cutoffIndex, low[tier] + slots.length);
+            for (int index = low[tier]; index < end; index++)
+            {
+                int slot = Math.floorMod(index, slots.length);
+                total -= slots[slot];
+                slots[slot] = 0;
+            }
+
+            if (cutoffIndex >= low[tier] && cutoffIndex < low[tier] + slots.length)
+            {
+                int slot = Math.floorMod(cutoffIndex, slots.length);
+                int bucketEnd = (cutoffIndex + 1) * width;
+                int from = Math.max(cutoffIndex * width, expiredBefore[tier]);
+                if (cutoffMinute > from && slots[slot] != 0)
+                {
+                    int kept = (int) Math.round((double) slots[slot] * (bucketEnd - cutoffMinute) / (bucketEnd - from));
+                    total -= slots[slot] - kept;
+                    slots[slot] = kept;
+                }
+            }
+
+            expiredBefore[tier] = Math.max(expiredBefore[tier], cutoffMinute);
+            low[tier] = Math.max(low[tier], alignedLow(tier, cutoffIndex));
+        }
+    }
+
+    /**
+     * Counts kills in buckets starting at or after the given tick, taking the
+     * overlapping share of a coarse bucket that straddles it.
+     */
+    int countSince(int sinceTick)
+    {
+        int sinceMinute = bucketOf(sinceTick);
+        double kills = 0;
+        for (int tier = 0; tier < TIERS; tier++)
+        {
+            if (low[tier] == UNANCHORED)
+            {
+                continue;
+            }
+
+            int width = TIER_MINUTES[tier];
+            int[] slots = counts[tier];
+            int end = low[tier] + slots.length;
+            for (int index = Math.max(low[tier], Math.floorDiv(sinceMinute, width)); index < end; index++)
+            {
+                int count = slots[Math.floorMod(index, slots.length)];
+                // A bucket trimmed by expiry only covers the minutes from the cutoff
+                int start = Math.max(index * width, expiredBefore[tier]);
+                int bucketEnd = (index + 1) * width;
+                kills += start >= sinceMinute ? count : (double) count * (bucketEnd - sinceMinute) / (bucketEnd - start);
+            }
+
+            // Coarser tiers only hold buckets older than this tier's oldest
+            if (sinceMinute >= low[tier] * width)
+            {
+                break;
+            }
+        }
+        return (int) Math.round(kills);
+    }
+
+    /**
+     * Counts kills for several trailing windows ending at the same tick.
+     */
+    void countSince(int nowTick, int[] windowMinutes, int[] counts)
+    {
+        for (int i = 0; i < windowMinutes.length; i++)
+        {
+            counts[i] = countSince(nowTick - windowMinutes[i] * TickClock.TICKS_PER_MINUTE);
+        }
+    }
+
+    int getTotal()
+    {
+        return total;
+    }
+
+    boolean isEmpty()
+    {
+        return total == 0;
+    }
+
+    /**
+     * First tick of the oldest non-empty bucket, or {@code Integer.MIN_VALUE} when empty.
+     */
+    int getFirstBucketTick()
+    {
+        return firstBucketEdge(0);
+    }
+
+    /**
+     * First tick after the oldest non-empty bucket, which is when a cutoff
+     * reaching it expires that bucket, or {@code Integer.MIN_VALUE} when empty.
+     */
+    int getFirstBucketEndTick()
+    {
+        return firstBucketEdge(1);
+    }
+
+    /**
+     * Number of non-empty buckets across all tiers.
+     */
+    int getBucketCount()
+    {
+        int buckets = 0;
+        for (int tier = 0; tier < TIERS; tier++)
+        {
+            if (counts[tier] != null)
+            {
+                for (int count : counts[tier])
+                {
+                    if (count != 0)
+                    {
+                        buckets++;
+                    }
+                }
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Visits every non-empty bucket, oldest first, with the first tick it covers.
+     */
+    void forEachBucket(BucketVisitor visitor)
+    {
+        for (int tier = TIERS - 1; tier >= 0; tier--)
+        {
+            if (low[tier] == UNANCHORED)
+            {
+                continue;
+            }
+
+            int[] slots = counts[tier];
+            for (int index = low[tier]; index < low[tier] + slots.length; index++)
+            {
+                int count = slots[Math.floorMod(index, slots.length)];
+                if (count != 0)
+                {
+                    visitor.visit(Math.max(index * TIER_MINUTES[tier], expiredBefore[tier]) * BUCKET_TICKS, count);
+                }
+            }
+        }
+    }
+
+    void clear()
+    {
+        for (int tier = 0; tier < TIERS; tier++)
+        {
+            if (counts[tier] != null)
+            {
+                Arrays.fill(counts[tier], 0);
+            }
+            low[tier] = UNANCHORED;
+            expiredBefore[tier] = UNANCHORED;
+        }
+        total = 0;
+    }
+
+    private int firstBucketEdge(int offset)
+    {
+        for (int tier = TIERS - 1; tier >= 0; tier--)
+        {
+            if (low[tier] == UNANCHORED)
+            {
+                continue;
+            }
+
+            int[] slots = counts[tier];
+            for (int index = low[tier]; index < low[tier] + slots.length; index++)
+            {
+                if (slots[Math.floorMod(index, slots.length)] != 0)
+                {
+                    int minute = (index + offset) * TIER_MINUTES[tier];
+                    return (offset == 0 ? Math.max(minute, expiredBefore[tier]) : minute) * BUCKET_TICKS;
+                }
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    private void put(int tier, int index, int kills)
+    {
+        if (low[tier] == UNANCHORED)
+        {
+            if (counts[tier] == null)
+            {
+                counts[tier] = new int[TIER_BUCKETS[tier]];
+            }
+            low[tier] = lowFor(tier, index);
+        }
+
+        int[] slots = counts[tier];
+        if (index < low[tier])
+        {
+            if (tier + 1 < TIERS)
+            {
+                put(tier + 1, Math.floorDiv(index, ratio(tier)), kills);
+                return;
+            }
+            index = low[tier];
+        }
+        else if (index >= low[tier] + slots.length)
+        {
+            slide(tier, lowFor(tier, index));
+        }
+
+        slots[Math.floorMod(index, slots.length)] += kills;
+    }
+
+    /**
+     * Moves a tier's oldest slot up to the given index, folding the buckets
+     * that fall off into the next tier, or dropping them off the last one.
+     */
+    private void slide(int tier, int newLow)
+    {
+        int[] slots = counts[tier];
+        int end = Math.min(newLow, low[tier] + slots.length);
+        for (int index = low[tier]; index < end; index++)
+        {
+            int slot = Math.floorMod(index, slots.length);
+            int count = slots[slot];
+            if (count == 0)
+            {
+                continue;
+            }
+
+            slots[slot] = 0;
+            if (tier + 1 < TIERS)
+            {
+                put(tier + 1, Math.floorDiv(index, ratio(tier)), count);
+            }
+            else
+            {
+                total -= count;
+            }
+        }
+        low[tier] = newLow;
+    }
+
+    /**
+     * Lowest oldest slot that still keeps the index in the tier, aligned so
+     * that whole buckets fold into the next tier.
+     */
+    private static int lowFor(int tier, int index)
+    {
+        int alignment = tier + 1 < TIERS ? ratio(tier) : 1;
+        return -Math.floorDiv(-(index - TIER_BUCKETS[tier] + 1), alignment) * alignment;
+    }
+
+    /**
+     * Oldest slot for a tier moved up to the given index, aligned as in
+     * {@link #lowFor(int, int)}.
+     */
+    private static int alignedLow(int tier, int index)
+    {
+        int alignment = tier + 1 < TIERS ? ratio(tier) : 1;
+        return Math.floorDiv(index, alignment) * alignment;
+    }
+
+    private static int ratio(int tier)
+    {
+        return TIER_MINUTES[tier + 1] / TIER_MINUTES[tier];
+    }
+}
@@ -0,0 +1,321 @@
+package com.npckphtracker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact image of the aggregated tracking state, written every few minutes so
+ * startup can restore it directly and replay only the journal records written
+ * since, however long the history is.
+ *
+ * The file holds a 32 byte header followed by one entry per NPC: its key,
+ * totals, first and last kill, and each non-empty bucket of its timeline as
+ * a minute offset from the first and a kill count. Restoring reads only the
+ * fixed part of each entry; the buckets stay in the memory-mapped file until
+ * that NPC's detail is first needed.
+ *
+ * Checkpoints are written as {@code checkpoint.<id>.bin} with increasing ids
+ * and older ones are removed afterwards, so a mapped file is never replaced
+ * in place. A checkpoint is only trusted if the journal header names its id.
+ */
+@Slf4j
+class KillCheckpoint
+{
+    private static final int MAGIC = 0x4E4B5043;
+    private static final int VERSION = 1;
+    // magic, version, id, entry count, created epoch millis, slayer creature, slayer amount
+    private static final int HEADER_BYTES = 32;
+    // key, kill count, GP, first kill, last kill, first bucket, bucket count
+    private static final int ENTRY_BYTES = 44;
+    // minute offset, kills
+    private static final int BUCKET_BYTES = 8;
+    private static final long BUCKET_MILLIS = KillTimeline.BUCKET_TICKS * TickClock.TICK_MILLIS;
+
+    private static final String PREFIX = "checkpoint.";
+    private static final String SUFFIX = ".bin";
+
+    /**
+     * One NPC's bucket counts, left in the mapped file until they are needed.
+     */
+    static final class Entry
+    {
+        private final ByteBuffer mapped;
+        private final int position;
+        private final int bucketCount;
+        private final long firstBucketMillis;
+        private final TickClock clock;
+
+        private Entry(ByteBuffer mapped, int position, int bucketCount, long firstBucketMillis, TickClock clock)
+        {
+            this.mapped = mapped;
+            this.position = position;
+            this.bucketCount = bucketCount;
+            this.firstBucketMillis = firstBucketMillis;
+            this.clock = clock;
+        }
+
+        int getBucketCount()
+        {
+            return bucketCount;
+        }
+
+        long getFirstBucketMillis()
+        {
+            return firstBucketMillis;
+        }
+
+        /**
+         * Adds the stored kills to a timeline, re-bucketed onto this session's ticks.
+         */
+        void inflate(KillTimeline timeline)
+        {
+            for (int i = 0; i < bucketCount; i++)
+            {
+                int kills = killsAt(i);
+                if (kills > 0)
+                {
+                    timeline.add(clock.fromEpochMillis(firstBucketMillis + minuteAt(i) * BUCKET_MILLIS), kills);
+                }
+            }
+        }
+
+        /**
+         * Copies the stored bucket counts into the next checkpoint unchanged.
+         */
+        void copyBuckets(ByteBuffer out)
+        {
+            for (int i = 0; i < bucketCount; i++)
+            {
+                out.putInt(minuteAt(i));
+                out.putInt(killsAt(i));
+            }
+        }
+
+        private int minuteAt(int bucket)
+        {
+            return mapped.getInt(position + bucket * BUCKET_BYTES);
+        }
+
+        private int killsAt(int bucket)
+        {
+            return mapped.getInt(position + bucket * BUCKET_BYTES + 4);
+        }
+    }
+
+    private final MappedByteBuffer mapped;
+
+    private KillCheckpoint(MappedByteBuffer mapped)
+    {
+        this.mapped = mapped;
+    }
+
+    /**
+     * Maps the checkpoint with the given id, or returns null if it is missing
+     * or unreadable.
+     */
+    static KillCheckpoint open(File directory, int id)
+    {
+        if (id <= 0)
+        {
+            return null;
+        }
+
+        File file = file(directory, id);
+        if (!file.exists())
+        {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.capacity() < HEADER_BYTES || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                || mapped.getInt(8) != id)
+            {
+                log.warn("Ignoring unrecognised checkpoint {}", file);
+                return null;
+            }
+            return new KillCheckpoint(mapped);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to read checkpoint {}", file, e);
+            return null;
+        }
+    }
+
+    int getSlayerCreature()
+    {
+        return mapped.getInt(24);
+    }
+
+    int getSlayerAmount()
+    {
+        return mapped.getInt(28);
+    }
+
+    /**
+     * Gives every NPC in the checkpoint its totals, deferring its kill
+     * timeline until it is first used.
+     */
+    int restore(NpcTrackingStore store, TickClock clock)
+    {
+        int entries = mapped.getInt(12);
+        int position = HEADER_BYTES;
+        int restored = 0;
+        for (int i = 0; i < entries; i++)
+        {
+            int key = mapped.getInt(position);
+            int killCount = mapped.getInt(position + 4);
+            long totalGp = mapped.getLong(position + 8);
+            int firstKillTick = clock.fromEpochMillis(mapped.getLong(position + 16));
+            int lastKillTick = clock.fromEpochMillis(mapped.getLong(position + 24));
+            long firstBucketMillis = mapped.getLong(position + 32);
+            int bucketCount = mapped.getInt(position + 40);
+            int bucketsPosition = position + ENTRY_BYTES;
+
+            if (key < store.size())
+            {
+                store.getOrCreate(key).restore(killCount, totalGp, firstKillTick, lastKillTick, clock.now(),
+                    new Entry(mapped, bucketsPosition, bucketCount, firstBucketMillis, clock));
+                restored++;
+            }
+            position = bucketsPosition + bucketCount * BUCKET_BYTES;
+        }
+        return restored;
+    }
+
+    /**
+     * Serialises the store. Runs on the client thread, which owns the data;
+     * the returned buffer is written out on another thread.
+     */
+    static ByteBuffer capture(int id, NpcTrackingStore store, TickClock clock, int slayerCreature, int slayerAmount)
+    {
+        int entries = 0;
+        int bytes = HEADER_BYTES;
+        for (int key = 0; key < store.size(); key++)
+        {
+            NpcTrackingData data = store.get(key);
+            if (data != null && data.getKillCount() > 0)
+            {
+                Entry deferred = data.getDeferredDetail();
+                entries++;
+                bytes += ENTRY_BYTES + (deferred != null ? deferred.getBucketCount() : data.getTimeline().getBucketCount()) * BUCKET_BYTES;
+            }
+        }
+
+        ByteBuffer image = ByteBuffer.allocate(bytes);
+        image.putInt(MAGIC);
+        image.putInt(VERSION);
+        image.putInt(id);
+        image.putInt(entries);
+        image.putLong(System.currentTimeMillis());
+        image.putInt(slayerCreature);
+        image.putInt(slayerAmount);
+
+        for (int key = 0; key < store.size(); key++)
+        {
+            NpcTrackingData data = store.get(key);
+            if (data == null || data.getKillCount() == 0)
+            {
+                continue;
+            }
+
+            image.putInt(key);
+            image.putInt(data.getKillCount());
+            image.putLong(data.getTotalGpGained());
+            image.putLong(clock.toEpochMillis(data.getFirstKillTick()));
+            image.putLong(clock.toEpochMillis(data.getLastKillTick()));
+
+            // NPCs nobody has looked at since startup are carried over without inflating them
+            Entry deferred = data.getDeferredDetail();
+            if (deferred != null)
+            {
+                image.putLong(deferred.getFirstBucketMillis());
+                image.putInt(deferred.getBucketCount());
+                deferred.copyBuckets(image);
+                continue;
+            }
+
+            KillTimeline timeline = data.getTimeline();
+            int firstBucketTick = timeline.getFirstBucketTick();
+            image.putLong(clock.toEpochMillis(firstBucketTick));
+            image.putInt(timeline.getBucketCount());
+            timeline.forEachBucket((startTick, kills) ->
+            {
+                image.putInt((startTick - firstBucketTick) / KillTimeline.BUCKET_TICKS);
+                image.putInt(kills);
+            });
+        }
+
+        image.flip();
+        return image;
+    }
+
+    /**
+     * Writes a captured checkpoint. The file is complete on disk before it
+     * gets its final name.
+     */
+    static void write(File directory, int id, ByteBuffer image) throws IOException
+    {
+        File temp = new File(directory, PREFIX + id + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            while (image.hasRemaining())
+            {
+                out.write(image);
+            }
+            out.force(true);
+        }
+        Files.move(temp.toPath(), file(directory, id).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Removes checkpoints older than the given id once the journal has
+     * stopped referring to them.
+     */
+    static void deleteBefore(File directory, int id)
+    {
+        String[] files = directory.list();
+        if (files == null)
+        {
+            return;
+        }
+
+        for (String name : files)
+        {
+            if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX))
+            {
+                continue;
+            }
+
+            String number = name.substring(PREFIX.length(), name.length() - SUFFIX.length());
+            try
+            {
+                // Windows refuses while deferred NPCs still map the file; a later checkpoint retries
+                if (Integer.parseInt(number) < id && !new File(directory, name).delete())
+                {
+                    log.debug("Unable to delete old checkpoint {}", name);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                log.debug("Ignoring unexpected checkpoint file {}", name);
+            }
+        }
+    }
+
+    private static File file(File directory, int id)
+    {
+        return new File(directory, PREFIX + id + SUFFIX);
+    }
+}
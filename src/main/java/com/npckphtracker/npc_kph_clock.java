@@ -0,0 +1,145 @@
+package com.npckphtracker;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Monotonic time base counted in 600ms game ticks. While logged in it follows
+ * the client's tick counter; when ticks stop arriving (login screen, hopping,
+ * lag spikes) it falls back to {@link System#nanoTime()}, so recorded times never
+ * jump with the wall clock and never run backwards.
+ *
+ * Ticks run long while the server lags, so the wall-clock time of a tick
+ * drifts behind real time over a long session. {@link #reanchor()} moves the
+ * mapping back onto the wall clock; ticks themselves are never adjusted.
+ */
+class TickClock
+{
+    static final long TICK_MILLIS = 600L;
+    static final int TICKS_PER_MINUTE = 100;
+    static final int TICKS_PER_HOUR = 60 * TICKS_PER_MINUTE;
+
+    private static final long TICK_NANOS = TICK_MILLIS * 1_000_000L;
+    // Gaps longer than this are measured with nanoTime instead of the client counter
+    private static final int MAX_IDLE_TICKS = 2;
+
+    private final LongSupplier nanoTime;
+    private final LongSupplier epochMillis;
+    private long originEpochMillis;
+    private int tick;
+    private long tickNanos;
+    private int lastClientTick = -1;
+
+    TickClock()
+    {
+        this(System::nanoTime, System::currentTimeMillis);
+    }
+
+    /**
+     * Clock measuring real time with the given source, so replays can run
+     * faster than the game while still seeing the gaps they recorded.
+     */
+    TickClock(LongSupplier nanoTime)
+    {
+        this(nanoTime, System.currentTimeMillis());
+    }
+
+    /**
+     * Clock whose tick 0 falls at the given wall-clock time, so a replay can
+     * start a later session as if the client had been closed in between.
+     */
+    TickClock(LongSupplier nanoTime, long originEpochMillis)
+    {
+        this(nanoTime, elapsedSince(nanoTime, originEpochMillis));
+    }
+
+    private TickClock(LongSupplier nanoTime, LongSupplier epochMillis)
+    {
+        this.nanoTime = nanoTime;
+        this.epochMillis = epochMillis;
+        originEpochMillis = epochMillis.getAsLong();
+        tickNanos = nanoTime.getAsLong();
+    }
+
+    /**
+     * Wall clock that starts at the given time and then runs with the given
+     * source, so a replayed session sees the wall time it recorded.
+     */
+    private static LongSupplier elapsedSince(LongSupplier nanoTime, long originEpochMillis)
+    {
+        long startNanos = nanoTime.getAsLong();
+        return () -> originEpochMillis + (nanoTime.getAsLong() - startNanos) / 1_000_000L;
+    }
+
+    /**
+     * Advances the clock from a {@code GameTick}. The client counter resets on
+     * login and world hops, so any step it reports that disagrees with elapsed
+     * real time is replaced by the real time.
+     */
+    void onGameTick(int clientTick)
+    {
+        long nanos = nanoTime.getAsLong();
+        int realTicks = (int) ((nanos - tickNanos) / TICK_NANOS);
+        int clientStep = clientTick - lastClientTick;
+
+        int step;
+        if (realTicks > MAX_IDLE_TICKS || lastClientTick < 0 || clientStep <= 0 || clientStep > MAX_IDLE_TICKS)
+        {
+            step = Math.max(1, realTicks);
+        }
+        else
+        {
+            step = clientStep;
+        }
+
+        tick += step;
+        tickNanos = nanos;
+        lastClientTick = clientTick;
+    }
+
+    /**
+     * Current tick. Between game ticks this is the last tick seen, and while
+     * no game ticks are arriving it keeps counting from real time.
+     */
+    int now()
+    {
+        int idleTicks = (int) ((nanoTime.getAsLong() - tickNanos) / TICK_NANOS);
+        if (idleTicks > MAX_IDLE_TICKS)
+        {
+            return tick + idleTicks;
+        }
+        return tick;
+    }
+
+    /**
+     * Maps the last tick to the current wall-clock time again, taking up the
+     * drift since the previous call. Called periodically on the client thread
+     * so journal times and the retention cutoff keep agreeing with real time.
+     */
+    void reanchor()
+    {
+        long sinceTickMillis = (nanoTime.getAsLong() - tickNanos) / 1_000_000L;
+        originEpochMillis = epochMillis.getAsLong() - sinceTickMillis - tick * TICK_MILLIS;
+    }
+
+    /**
+     * Approximate wall-clock time of a tick, for display and persistence only.
+     */
+    long toEpochMillis(int tick)
+    {
+        return originEpochMillis + tick * TICK_MILLIS;
+    }
+
+    /**
+     * Tick closest to a wall-clock time, for restoring persisted history.
+     * Times before this clock started map to negative ticks.
+     */
+    int fromEpochMillis(long epochMillis)
+    {
+        return (int) Math.floorDiv(epochMillis - originEpochMillis, TICK_MILLIS);
+    }
+
+    static double ticksToHours(long ticks)
+    {
+        return ticks / (double) TICKS_PER_HOUR;
+    }
+}
@@ -5,9 +5,11 @@ import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
 import net.runelite.client.config.Range;
 
-@ConfigGroup("npcKphTracker")
+@ConfigGroup(NpcKphTrackerConfig.GROUP)
 public interface NpcKphTrackerConfig extends Config
 {
+    String GROUP = "npcKphTracker";
+
     @ConfigItem(
         keyName = "showOverlay",
         name = "Show Overlay",
@@ -100,6 +102,58 @@ public interface NpcKphTrackerConfig extends Config
         return 15;
     }
 
+    @ConfigItem(
+        keyName = "rateMode",
+        name = "Recent Rate Mode",
+        description = "Show recent KPH and GP/hour over the recent time window, or as a smoothed pace that weighs older kills and drops less and less"
+    )
+    default RateMode rateMode()
+    {
+        return RateMode.WINDOW;
+    }
+
+    @ConfigItem(
+        keyName = "paceHalfLifeMinutes",
+        name = "KPH Pace Half-Life (Minutes)",
+        description = "How long until a kill counts half as much towards the smoothed KPH pace"
+    )
+    @Range(min = 1, max = 120)
+    default int paceHalfLifeMinutes()
+    {
+        return 10;
+    }
+
+    @ConfigItem(
+        keyName = "gpPaceHalfLifeMinutes",
+        name = "GP Pace Half-Life (Minutes)",
+        description = "How long until a drop counts half as much towards the smoothed GP/hour pace"
+    )
+    @Range(min = 1, max = 240)
+    default int gpPaceHalfLifeMinutes()
+    {
+        return 30;
+    }
+
+    @ConfigItem(
+        keyName = "showKphBreakdown",
+        name = "Show KPH Breakdown",
+        description = "Display recent kills per hour over the last 5, 15 and 60 minutes"
+    )
+    default boolean showKphBreakdown()
+    {
+        return false;
+    }
+
+    @ConfigItem(
+        keyName = "useRecentKphForEstimate",
+        name = "Use Recent KPH for Estimate",
+        description = "Base the slayer task time estimate on recent kills, weighted down over the KPH pace half-life, instead of every kill"
+    )
+    default boolean useRecentKphForEstimate()
+    {
+        return true;
+    }
+
     @ConfigItem(
         keyName = "showKillCount",
         name = "Show Kill Count",
@@ -110,6 +164,46 @@ public interface NpcKphTrackerConfig extends Config
         return true;
     }
 
+    @ConfigItem(
+        keyName = "showGpTracking",
+        name = "Show GP Tracking",
+        description = "Display GP gained while tracking"
+    )
+    default boolean showGpTracking()
+    {
+        return true;
+    }
+
+    @ConfigItem(
+        keyName = "gpTrackingMode",
+        name = "GP Source",
+        description = "Loot Drops values each NPC's drop and credits the kill that dropped it; Inventory credits any inventory value gain to the tracked NPC"
+    )
+    default GpTrackingMode gpTrackingMode()
+    {
+        return GpTrackingMode.LOOT_DROPS;
+    }
+
+    @ConfigItem(
+        keyName = "showAvgGpPerKill",
+        name = "Show Avg GP/Kill",
+        description = "Display average GP gained per kill"
+    )
+    default boolean showAvgGpPerKill()
+    {
+        return true;
+    }
+
+    @ConfigItem(
+        keyName = "showGpPerHour",
+        name = "Show GP/Hour",
+        description = "Display GP gained per hour"
+    )
+    default boolean showGpPerHour()
+    {
+        return true;
+    }
+
     @ConfigItem(
         keyName = "overlayPosition",
         name = "Overlay Position",
@@ -120,6 +214,78 @@ public interface NpcKphTrackerConfig extends Config
         return OverlayPosition.TOP_LEFT;
     }
 
+    @ConfigItem(
+        keyName = "showLeaderboard",
+        name = "Leaderboard Mode",
+        description = "Show the top NPCs killed this session in the overlay instead of the tracked NPC"
+    )
+    default boolean showLeaderboard()
+    {
+        return false;
+    }
+
+    @ConfigItem(
+        keyName = "leaderboardSize",
+        name = "Leaderboard Size",
+        description = "Number of NPCs shown in leaderboard mode"
+    )
+    @Range(min = 1, max = 10)
+    default int leaderboardSize()
+    {
+        return 5;
+    }
+
+    @ConfigItem(
+        keyName = "leaderboardMetric",
+        name = "Leaderboard Ranking",
+        description = "Rank NPCs in leaderboard mode by recent KPH or by GP per hour"
+    )
+    default LeaderboardMetric leaderboardMetric()
+    {
+        return LeaderboardMetric.RECENT_KPH;
+    }
+
+    @ConfigItem(
+        keyName = "recordSessions",
+        name = "Record Sessions",
+        description = "Record the events the tracker sees to .runelite/npc-kph-tracker/recordings so sessions can be replayed. Takes effect when the plugin starts"
+    )
+    default boolean recordSessions()
+    {
+        return false;
+    }
+
+    @ConfigItem(
+        keyName = "showHandlerTimings",
+        name = "Show Handler Timings",
+        description = "Time the tracker's event handlers and overlay, and show p50/p99/max and call counts in a debug overlay"
+    )
+    default boolean showHandlerTimings()
+    {
+        return false;
+    }
+
+    @ConfigItem(
+        keyName = "trackAllocations",
+        name = "Track Allocations",
+        description = "Count the bytes each event handler and the overlay allocate per game tick and show the average over the last minute in the panel"
+    )
+    default boolean trackAllocations()
+    {
+        return false;
+    }
+
+    @ConfigItem(
+        keyName = "allocationBudget",
+        name = "Allocation Budget (KB/Tick)",
+        description = "Steady-state allocation per game tick above which the panel flags the tracker"
+    )
+    @Range(min = 1, max = 4096)
+    default int allocationBudget()
+    {
+        return 64;
+    }
+
     enum OverlayPosition
     {
         TOP_LEFT,
@@ -127,4 +293,22 @@ public interface NpcKphTrackerConfig extends Config
         BOTTOM_LEFT,
         BOTTOM_RIGHT
     }
+
+    enum GpTrackingMode
+    {
+        LOOT_DROPS,
+        INVENTORY
+    }
+
+    enum RateMode
+    {
+        WINDOW,
+        SMOOTHED
+    }
+
+    enum LeaderboardMetric
+    {
+        RECENT_KPH,
+        GP_PER_HOUR
+    }
 }
\ No newline at end of file
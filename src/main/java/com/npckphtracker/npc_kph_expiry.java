@@ -0,0 +1,165 @@
+package com.npckphtracker;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hashed timer wheel holding one expiry time per tracked NPC, keyed by store
+ * key. Each slot is an intrusive doubly linked list threaded through arrays
+ * indexed by key, so scheduling, rescheduling and cancelling are O(1) and
+ * allocate nothing once the arrays have grown. Advancing visits only the
+ * slots for the ticks that have passed; entries due on a later turn of the
+ * wheel stay where they are. Client thread only.
+ */
+class ExpiryWheel
+{
+    // A little over ten minutes of ticks; a power of two so slots are a mask
+    private static final int SLOTS = 1024;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NONE = -1;
+    private static final int UNSET = Integer.MIN_VALUE;
+
+    private final int[] heads = new int[SLOTS];
+    private int[] next = new int[INITIAL_CAPACITY];
+    private int[] previous = new int[INITIAL_CAPACITY];
+    private int[] due = new int[INITIAL_CAPACITY];
+    private boolean[] scheduled = new boolean[INITIAL_CAPACITY];
+    private int size;
+    // Last tick whose slot has been visited
+    private int lastTick = UNSET;
+
+    ExpiryWheel()
+    {
+        Arrays.fill(heads, NONE);
+    }
+
+    boolean isScheduled(int key)
+    {
+        return key < scheduled.length && scheduled[key];
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Sets the tick an NPC is due at, replacing any earlier schedule. A tick
+     * that has already passed is due on the next advance.
+     */
+    void schedule(int key, int dueTick)
+    {
+        if (key >= scheduled.length)
+        {
+            int capacity = Math.max(key + 1, scheduled.length * 2);
+            next = Arrays.copyOf(next, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            due = Arrays.copyOf(due, capacity);
+            scheduled = Arrays.copyOf(scheduled, capacity);
+        }
+
+        cancel(key);
+        if (lastTick != UNSET && dueTick <= lastTick)
+        {
+            dueTick = lastTick + 1;
+        }
+        due[key] = dueTick;
+        link(key);
+    }
+
+    void cancel(int key)
+    {
+        if (!isScheduled(key))
+        {
+            return;
+        }
+
+        int slot = slot(due[key]);
+        if (previous[key] == NONE)
+        {
+            heads[slot] = next[key];
+        }
+        else
+        {
+            next[previous[key]] = next[key];
+        }
+        if (next[key] != NONE)
+        {
+            previous[next[key]] = previous[key];
+        }
+        scheduled[key] = false;
+        size--;
+    }
+
+    void clear()
+    {
+        Arrays.fill(heads, NONE);
+        Arrays.fill(scheduled, false);
+        size = 0;
+        lastTick = UNSET;
+    }
+
+    /**
+     * Hands every NPC due at or before {@code now} to {@code expired},
+     * unscheduled first so it can be scheduled again from the callback.
+     * After a gap longer than the wheel, or on the first call, every slot is
+     * visited once.
+     */
+    void advance(int now, IntConsumer expired)
+    {
+        if (lastTick != UNSET && now <= lastTick)
+        {
+            return;
+        }
+
+        boolean sweep = lastTick == UNSET || now - lastTick >= SLOTS;
+        int from = sweep ? now - SLOTS + 1 : lastTick + 1;
+        lastTick = now;
+        for (int tick = from; tick <= now; tick++)
+        {
+            visit(slot(tick), now, expired);
+        }
+    }
+
+    private void visit(int slot, int now, IntConsumer expired)
+    {
+        // Detach the list so keys scheduled by the callback are not seen again
+        int key = heads[slot];
+        heads[slot] = NONE;
+        while (key != NONE)
+        {
+            int following = next[key];
+            scheduled[key] = false;
+            size--;
+            if (due[key] <= now)
+            {
+                expired.accept(key);
+            }
+            else
+            {
+                link(key);
+            }
+            key = following;
+        }
+    }
+
+    private void link(int key)
+    {
+        int slot = slot(due[key]);
+        int head = heads[slot];
+        next[key] = head;
+        previous[key] = NONE;
+        if (head != NONE)
+        {
+            previous[head] = key;
+        }
+        heads[slot] = key;
+        scheduled[key] = true;
+        size++;
+    }
+
+    private static int slot(int tick)
+    {
+        return tick & (SLOTS - 1);
+    }
+}
@@ -0,0 +1,264 @@
+package com.npckphtracker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes the kill and GP records in the journal out to a file for analysis.
+ * Records are streamed from a {@link KillJournal.Snapshot} to buffered output,
+ * so memory use stays the same however much history there is and the journal
+ * is never locked while the file is written.
+ *
+ * The columnar format is a header, the NPC names, and then three columns of
+ * equal length: int seconds since the header's base epoch second, int NPC
+ * keys indexing the names, and long GP deltas. Kill rows have a GP delta of 0.
+ * All values are big-endian.
+ */
+class HistoryExport
+{
+    enum Format
+    {
+        CSV("csv"),
+        COLUMNAR("bin");
+
+        private final String extension;
+
+        Format(String extension)
+        {
+            this.extension = extension;
+        }
+
+        String getExtension()
+        {
+            return extension;
+        }
+    }
+
+    private static final int MAGIC = 0x4E4B5058;
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final DateTimeFormatter CSV_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+        .withZone(ZoneId.systemDefault());
+
+    private HistoryExport()
+    {
+    }
+
+    /**
+     * Exports every kill and GP record currently in the journal and returns
+     * the number of rows written. Runs on a background thread; the journal
+     * keeps flushing and compacting meanwhile, and closing it cancels the
+     * export.
+     */
+    static int export(KillJournal journal, NpcTrackingView names, File file, Format format) throws IOException
+    {
+        // Names can be added while exporting, so only keys known up front are written
+        int nameCount = names.size();
+
+        try (KillJournal.Snapshot records = journal.snapshot())
+        {
+            return format == Format.CSV
+                ? exportCsv(records, names, nameCount, file)
+                : exportColumnar(records, names, nameCount, file);
+        }
+    }
+
+    private static boolean isExported(int type, int key, int nameCount)
+    {
+        return (type == KillJournal.TYPE_KILL || type == KillJournal.TYPE_GP) && key < nameCount;
+    }
+
+    private static int exportCsv(KillJournal.Snapshot records, NpcTrackingView names, int nameCount, File file) throws IOException
+    {
+        String[] escaped = new String[nameCount];
+        for (int key = 0; key < nameCount; key++)
+        {
+            escaped[key] = escapeCsv(names.getName(key));
+        }
+
+        int[] rows = new int[1];
+        IOException[] failure = new IOException[1];
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_BYTES))
+        {
+            out.write("time,type,npc,gp\n");
+            records.replay((type, key, epochMillis, value) ->
+            {
+                if (failure[0] != null || !isExported(type, key, nameCount))
+                {
+                    return;
+                }
+
+                try
+                {
+                    CSV_TIME_FORMAT.formatTo(Instant.ofEpochMilli(epochMillis), out);
+                    out.write(type == KillJournal.TYPE_KILL ? ",kill," : ",gp,");
+                    out.write(escaped[key]);
+                    out.write(',');
+                    out.write(Long.toString(type == KillJournal.TYPE_GP ? value : 0));
+                    out.write('\n');
+                    rows[0]++;
+                }
+                catch (IOException e)
+                {
+                    failure[0] = e;
+                }
+            });
+        }
+
+        if (failure[0] != null)
+        {
+            throw failure[0];
+        }
+        return rows[0];
+    }
+
+    private static int exportColumnar(KillJournal.Snapshot records, NpcTrackingView names, int nameCount, File file) throws IOException
+    {
+        // First pass sizes the columns so each can be written at its final position
+        int[] rowCount = new int[1];
+        long[] baseSecond = {Long.MAX_VALUE};
+        records.replay((type, key, epochMillis, value) ->
+        {
+            if (isExported(type, key, nameCount))
+            {
+                rowCount[0]++;
+                baseSecond[0] = Math.min(baseSecond[0], epochMillis / 1000);
+            }
+        });
+        int rows = rowCount[0];
+        long base = rows == 0 ? 0 : baseSecond[0];
+
+        byte[][] encoded = new byte[nameCount][];
+        int namesBytes = 0;
+        for (int key = 0; key < nameCount; key++)
+        {
+            encoded[key] = names.getName(key).getBytes(StandardCharsets.UTF_8);
+            namesBytes += 2 + encoded[key].length;
+        }
+
+        try (FileChannel out = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer header = ByteBuffer.allocate(24 + namesBytes);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(rows);
+            header.putInt(nameCount);
+            header.putLong(base);
+            for (byte[] name : encoded)
+            {
+                header.putShort((short) name.length);
+                header.put(name);
+            }
+            header.flip();
+            writeAt(out, header, 0);
+
+            ColumnWriter times = new ColumnWriter(out, header.limit());
+            ColumnWriter keys = new ColumnWriter(out, times.start + 4L * rows);
+            ColumnWriter gp = new ColumnWriter(out, keys.start + 4L * rows);
+            IOException[] failure = new IOException[1];
+            int[] written = new int[1];
+            records.replay((type, key, epochMillis, value) ->
+            {
+                if (failure[0] != null || written[0] == rows || !isExported(type, key, nameCount))
+                {
+                    return;
+                }
+
+                try
+                {
+                    times.putInt((int) (epochMillis / 1000 - base));
+                    keys.putInt(key);
+                    gp.putLong(type == KillJournal.TYPE_GP ? value : 0);
+                    written[0]++;
+                }
+                catch (IOException e)
+                {
+                    failure[0] = e;
+                }
+            });
+
+            if (failure[0] != null)
+            {
+                throw failure[0];
+            }
+            times.flush();
+            keys.flush();
+            gp.flush();
+        }
+        return rows;
+    }
+
+    private static String escapeCsv(String value)
+    {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0)
+        {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static void writeAt(FileChannel out, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            position += out.write(buffer, position);
+        }
+    }
+
+    /**
+     * Buffers one column and writes it out at its own offset in the file.
+     */
+    private static final class ColumnWriter
+    {
+        private final FileChannel out;
+        private final long start;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private long position;
+
+        private ColumnWriter(FileChannel out, long start)
+        {
+            this.out = out;
+            this.start = start;
+            this.position = start;
+        }
+
+        void putInt(int value) throws IOException
+        {
+            if (buffer.remaining() < 4)
+            {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException
+        {
+            if (buffer.remaining() < 8)
+            {
+                flush();
+            }
+            buffer.putLong(value);
+        }
+
+        void flush() throws IOException
+        {
+            buffer.flip();
+            long length = buffer.remaining();
+            writeAt(out, buffer, position);
+            position += length;
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.npckphtracker;
+
+/**
+ * Forecast of how long the next N kills of an NPC will take, treating kills
+ * as a Poisson process. Only the sufficient statistics are kept: the number
+ * of gaps between kills and the ticks they add up to, once over every kill
+ * and once with each gap weighted down by half every pace half-life. Both
+ * are updated in constant time per kill.
+ *
+ * With a rate estimated from n gaps over T ticks, the time for r more kills
+ * is T r / n times an F(2r, 2n) variable, which covers both the randomness of
+ * the kills and the uncertainty in the rate. Its quantiles come from
+ * Paulson's normal approximation, so an estimate is a few arithmetic
+ * operations. Only kills seen while the client is running are counted: kills
+ * restored from an earlier session are spread over time the client spent
+ * closed, which would make the rate far too low. Client thread only.
+ */
+class KillForecast
+{
+    // Normal quantile of the 90th percentile, so low and high bound an 80% interval
+    private static final double Z = 1.2815516;
+    private static final double LN2 = Math.log(2);
+
+    /**
+     * Expected ticks to finish, with the bounds of the 80% interval.
+     */
+    static final class Estimate
+    {
+        private final long ticks;
+        private final long lowTicks;
+        private final long highTicks;
+
+        private Estimate(long ticks, long lowTicks, long highTicks)
+        {
+            this.ticks = ticks;
+            this.lowTicks = lowTicks;
+            this.highTicks = highTicks;
+        }
+
+        long getTicks()
+        {
+            return ticks;
+        }
+
+        long getLowTicks()
+        {
+            return lowTicks;
+        }
+
+        long getHighTicks()
+        {
+            return highTicks;
+        }
+    }
+
+    private int lastKillTick = NpcTrackingData.NO_KILL;
+    private double intervals;
+    private double intervalTicks;
+    private double recentIntervals;
+    private double recentIntervalTicks;
+
+    void onKill(int tick, int halfLifeTicks)
+    {
+        if (lastKillTick == NpcTrackingData.NO_KILL)
+        {
+            lastKillTick = tick;
+            return;
+        }
+
+        // Kills replayed out of order say nothing about the gaps
+        if (tick < lastKillTick)
+        {
+            return;
+        }
+
+        int gap = tick - lastKillTick;
+        double decay = Math.exp(-LN2 * gap / halfLifeTicks);
+        recentIntervals = recentIntervals * decay + 1;
+        recentIntervalTicks = recentIntervalTicks * decay + gap;
+        intervals++;
+        intervalTicks += gap;
+        lastKillTick = tick;
+    }
+
+    /**
+     * Forecast for the given number of kills from the last one, using the
+     * half-life weighted statistics when {@code recent} is set. Null until
+     * there is at least one gap to go on.
+     */
+    Estimate estimate(int remaining, boolean recent)
+    {
+        double gaps = recent ? recentIntervals : intervals;
+        double ticks = recent ? recentIntervalTicks : intervalTicks;
+        if (remaining <= 0 || gaps < 1 || ticks <= 0)
+        {
+            return null;
+        }
+
+        double expected = remaining * ticks / gaps;
+        return new Estimate(Math.round(expected),
+            Math.round(expected * fQuantile(2.0 * remaining, 2 * gaps, -Z)),
+            Math.round(expected * fQuantile(2.0 * remaining, 2 * gaps, Z)));
+    }
+
+    void reset()
+    {
+        lastKillTick = NpcTrackingData.NO_KILL;
+        intervals = 0;
+        intervalTicks = 0;
+        recentIntervals = 0;
+        recentIntervalTicks = 0;
+    }
+
+    /**
+     * Quantile of F(d1, d2) at the normal quantile z. Paulson's approximation
+     * treats the cube root of F as normal, which leaves a quadratic in it.
+     */
+    private static double fQuantile(double d1, double d2, double z)
+    {
+        double a = 2 / (9 * d1);
+        double b = 2 / (9 * d2);
+        double spread = Math.sqrt(Math.max(0, a * (1 - b) * (1 - b) + b * (1 - a) * (1 - a) - z * z * a * b));
+        double root = ((1 - a) * (1 - b) + z * spread) / ((1 - b) * (1 - b) - z * z * b);
+        return Math.max(0, root * root * root);
+    }
+}
@@ -0,0 +1,136 @@
+package com.npckphtracker;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of the ticks between one NPC's consecutive kills, with the
+ * same log-scale buckets as {@link LatencyHistogram}: gaps under eight ticks
+ * are exact and longer ones are reported within 12.5%. Memory is fixed at a
+ * few hundred bytes, allocated on the second kill, and recording is a few
+ * shifts and an increment. Gaps are kept for the whole session rather than
+ * expiring with the kills, and kills replayed from the journal are left
+ * out, so the time the client was closed does not count as a gap. Client
+ * thread only.
+ */
+class KillGapHistogram
+{
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Gaps from 2^20 ticks (about a week) up share the last bucket
+    private static final int MAX_EXPONENT = 20;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private int[] counts;
+    private int count;
+    private int max;
+    private int lastKillTick = NpcTrackingData.NO_KILL;
+
+    void onKill(int tick)
+    {
+        if (lastKillTick == NpcTrackingData.NO_KILL)
+        {
+            lastKillTick = tick;
+            return;
+        }
+
+        // Kills replayed out of order leave no gap of their own
+        if (tick < lastKillTick)
+        {
+            return;
+        }
+
+        record(tick - lastKillTick);
+        lastKillTick = tick;
+    }
+
+    private void record(int ticks)
+    {
+        if (counts == null)
+        {
+            counts = new int[BUCKETS];
+        }
+        counts[bucketOf(ticks)]++;
+        count++;
+        if (ticks > max)
+        {
+            max = ticks;
+        }
+    }
+
+    int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Longest gap recorded, or 0 when none was.
+     */
+    int getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Fills {@code ticks} with the gap at each of the ascending
+     * {@code fractions} in one pass over the buckets: the upper bound of the
+     * bucket holding it, capped at the longest gap. All 0 when nothing was
+     * recorded.
+     */
+    void percentiles(double[] fractions, int[] ticks)
+    {
+        if (count == 0)
+        {
+            Arrays.fill(ticks, 0);
+            return;
+        }
+
+        int next = 0;
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS - 1 && next < fractions.length; bucket++)
+        {
+            seen += counts[bucket];
+            while (next < fractions.length && seen >= Math.max(1, (long) Math.ceil(fractions[next] * count)))
+            {
+                ticks[next++] = Math.min(max, lowerBound(bucket + 1) - 1);
+            }
+        }
+        while (next < fractions.length)
+        {
+            ticks[next++] = max;
+        }
+    }
+
+    void reset()
+    {
+        counts = null;
+        count = 0;
+        max = 0;
+        lastKillTick = NpcTrackingData.NO_KILL;
+    }
+
+    private static int bucketOf(int ticks)
+    {
+        if (ticks < SUB_BUCKETS)
+        {
+            return ticks;
+        }
+
+        int exponent = 31 - Integer.numberOfLeadingZeros(ticks);
+        if (exponent >= MAX_EXPONENT)
+        {
+            return BUCKETS - 1;
+        }
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + ((ticks >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    private static int lowerBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        return (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+    }
+}
@@ -0,0 +1,104 @@
+package com.npckphtracker;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations in nanoseconds with fixed log-scale buckets: eight
+ * buckets per power of two, so any percentile is reported within 12.5% of the
+ * true value. Recording is a few shifts and an array increment with no
+ * allocation. Not thread safe; each histogram is written and read on one thread.
+ */
+class LatencyHistogram
+{
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Durations from 2^40ns (about 18 minutes) up share the last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long max;
+
+    void record(long nanos)
+    {
+        if (nanos < 0)
+        {
+            nanos = 0;
+        }
+
+        counts[bucketOf(nanos)]++;
+        count++;
+        if (nanos > max)
+        {
+            max = nanos;
+        }
+    }
+
+    long getCount()
+    {
+        return count;
+    }
+
+    long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given fraction of recorded
+     * durations, capped at the largest one recorded; 0 when nothing was.
+     */
+    long getPercentile(double fraction)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            seen += counts[bucket];
+            if (seen >= target && bucket < BUCKETS - 1)
+            {
+                return Math.min(max, lowerBound(bucket + 1) - 1);
+            }
+        }
+        return max;
+    }
+
+    void reset()
+    {
+        Arrays.fill(counts, 0);
+        count = 0;
+        max = 0;
+    }
+
+    private static int bucketOf(long nanos)
+    {
+        if (nanos < SUB_BUCKETS)
+        {
+            return (int) nanos;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT)
+        {
+            return BUCKETS - 1;
+        }
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) ((nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    private static long lowerBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+    }
+}
@@ -0,0 +1,107 @@
+package com.npckphtracker;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing int to int hash map with linear probing. Used where the keys
+ * are game ids (NPC composition ids, slayer creature ids) so lookups on the
+ * client thread do not box or allocate.
+ */
+class IntIntMap
+{
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private final int missingValue;
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    IntIntMap(int expectedSize, int missingValue)
+    {
+        this.missingValue = missingValue;
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        allocate(capacity);
+    }
+
+    int get(int key)
+    {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask)
+        {
+            if (keys[slot] == key)
+            {
+                return values[slot];
+            }
+            if (keys[slot] == FREE)
+            {
+                return missingValue;
+            }
+        }
+    }
+
+    void put(int key, int value)
+    {
+        if (key == FREE)
+        {
+            throw new IllegalArgumentException("Reserved key " + key);
+        }
+
+        int slot = slot(key);
+        while (keys[slot] != FREE && keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        if (keys[slot] == FREE)
+        {
+            keys[slot] = key;
+            if (++size * 2 > keys.length)
+            {
+                values[slot] = value;
+                rehash(keys.length * 2);
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    void clear()
+    {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private void rehash(int capacity)
+    {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != FREE)
+            {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, FREE);
+    }
+
+    private int slot(int key)
+    {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+}
@@ -0,0 +1,92 @@
+package com.npckphtracker;
+
+import net.runelite.api.Item;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Running GP value of an item container. Keeps the item id, quantity and unit
+ * price last seen in each slot and only reprices slots whose item changed, so
+ * a container update costs one comparison per slot instead of a price lookup
+ * per item.
+ */
+class InventoryValuation
+{
+    private static final int INVENTORY_SIZE = 28;
+
+    private final IntUnaryOperator priceLookup;
+    private int[] ids = new int[INVENTORY_SIZE];
+    private int[] quantities = new int[INVENTORY_SIZE];
+    private int[] unitPrices = new int[INVENTORY_SIZE];
+    private long total;
+
+    InventoryValuation(IntUnaryOperator priceLookup)
+    {
+        this.priceLookup = priceLookup;
+        Arrays.fill(ids, -1);
+    }
+
+    /**
+     * Applies the container's current contents and returns the new total value.
+     * Slots past the end of {@code items} are treated as empty.
+     */
+    long update(Item[] items)
+    {
+        if (items.length > ids.length)
+        {
+            grow(items.length);
+        }
+
+        for (int slot = 0; slot < ids.length; slot++)
+        {
+            int id = -1;
+            int quantity = 0;
+            if (slot < items.length && items[slot].getId() > 0)
+            {
+                id = items[slot].getId();
+                quantity = items[slot].getQuantity();
+            }
+
+            if (id == ids[slot] && quantity == quantities[slot])
+            {
+                continue;
+            }
+
+            total -= (long) unitPrices[slot] * quantities[slot];
+
+            if (id != ids[slot])
+            {
+                unitPrices[slot] = id > 0 ? priceLookup.applyAsInt(id) : 0;
+                ids[slot] = id;
+            }
+            quantities[slot] = quantity;
+
+            total += (long) unitPrices[slot] * quantity;
+        }
+
+        return total;
+    }
+
+    long getTotal()
+    {
+        return total;
+    }
+
+    void reset()
+    {
+        Arrays.fill(ids, -1);
+        Arrays.fill(quantities, 0);
+        Arrays.fill(unitPrices, 0);
+        total = 0;
+    }
+
+    private void grow(int capacity)
+    {
+        int oldLength = ids.length;
+        ids = Arrays.copyOf(ids, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        unitPrices = Arrays.copyOf(unitPrices, capacity);
+        Arrays.fill(ids, oldLength, capacity, -1);
+    }
+}
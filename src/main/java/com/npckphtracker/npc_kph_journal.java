@@ -0,0 +1,814 @@
+package com.npckphtracker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Append-only log of kills, GP gains, resets and slayer task changes, kept in
+ * a memory-mapped file under the RuneLite directory so tracking history
+ * survives client restarts and crashes.
+ *
+ * The client thread only copies each record into a small heap buffer; a
+ * background task moves that buffer into the mapping every few seconds, and
+ * the OS writes the mapped pages back to disk. Records are 16 bytes:
+ *
+ * <pre>
+ *   int   seconds since the journal's base epoch second
+ *   int   record type in the top byte, NPC key (or slayer creature id) below
+ *   long  value: GP amount for GP records, original amount for slayer tasks
+ * </pre>
+ *
+ * A record with type 0 marks the end of the log, since the unwritten part of
+ * the mapping reads as zeros. NPC keys are the tracking store's keys, and the
+ * names they stand for are kept in order, one per line, in a side file.
+ *
+ * Compaction writes the records still inside the retention window to the next
+ * journal generation and switches to it, so a crash part way through leaves
+ * the previous generation intact. GP does not expire while an NPC still has
+ * kills, so older GP records are folded into one record per NPC instead.
+ *
+ * The header also remembers the id of the last {@link KillCheckpoint} and the
+ * offset of the first record it does not cover, so startup only has to replay
+ * the records written after it.
+ */
+@Slf4j
+class KillJournal
+{
+    static final int TYPE_KILL = 1;
+    static final int TYPE_GP = 2;
+    static final int TYPE_SLAYER_TASK = 3;
+    static final int TYPE_RESET = 4;
+
+    // Key of a reset record that clears every NPC
+    static final int ALL_KEYS = 0xFFFFFF;
+    static final int RECORD_BYTES = 16;
+
+    private static final int MAGIC = 0x4E4B5048;
+    private static final int VERSION = 1;
+    // magic, version, base epoch second, committed end offset, checkpoint id and offset
+    private static final int HEADER_BYTES = 2 * RECORD_BYTES;
+    private static final int END_OFFSET_POSITION = 16;
+    private static final int CHECKPOINT_ID_POSITION = 24;
+    private static final int CHECKPOINT_OFFSET_POSITION = 28;
+    private static final int KEY_MASK = 0xFFFFFF;
+    // The mapping grows 1 MiB (65536 records) at a time
+    private static final int GROW_BYTES = 1 << 20;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+    // Queued records hold the full epoch millis until flush converts them
+    private static final int PENDING_RECORD_BYTES = 20;
+    private static final int INITIAL_PENDING_RECORDS = 256;
+    private static final long FLUSH_INTERVAL_SECONDS = 5;
+    private static final long COMPACT_INTERVAL_MINUTES = 60;
+
+    private static final String JOURNAL_PREFIX = "journal.";
+    private static final String JOURNAL_SUFFIX = ".bin";
+    private static final String NAMES_FILE = "names.txt";
+
+    /**
+     * Receives records in the order they were written.
+     */
+    interface Visitor
+    {
+        void visit(int type, int key, long epochMillis, long value);
+    }
+
+    /**
+     * The records flushed when it was taken, read through a read-only mapping
+     * of its own so a long read never holds the journal's monitor. A
+     * compaction meanwhile replaces the file without disturbing the mapping,
+     * and closing the journal cancels any snapshot still open.
+     */
+    static final class Snapshot implements Closeable
+    {
+        private final KillJournal journal;
+        private final FileChannel channel;
+        private final MappedByteBuffer mapped;
+        private final long baseEpochSecond;
+        private final int endOffset;
+        private volatile boolean cancelled;
+
+        private Snapshot(KillJournal journal, FileChannel channel, MappedByteBuffer mapped, long baseEpochSecond, int endOffset)
+        {
+            this.journal = journal;
+            this.channel = channel;
+            this.mapped = mapped;
+            this.baseEpochSecond = baseEpochSecond;
+            this.endOffset = endOffset;
+        }
+
+        /**
+         * Replays every record in the snapshot, stopping with an exception if
+         * the journal is closed part way through.
+         */
+        void replay(Visitor visitor) throws IOException
+        {
+            for (int position = HEADER_BYTES; position < endOffset; position += RECORD_BYTES)
+            {
+                if (cancelled)
+                {
+                    throw new IOException("Kill journal was closed");
+                }
+
+                int typeAndKey = mapped.getInt(position + 4);
+                visitor.visit(typeAndKey >>> 24, typeAndKey & KEY_MASK,
+                    recordEpochMillis(mapped, baseEpochSecond, position), mapped.getLong(position + 8));
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            synchronized (journal)
+            {
+                journal.snapshots.remove(this);
+            }
+            channel.close();
+        }
+    }
+
+    private final File directory;
+    private final List<String> names;
+    private final Object pendingLock = new Object();
+
+    // File state, guarded by this
+    private int generation;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long baseEpochSecond;
+    private int endOffset;
+    private long flushedRecords;
+    private Writer namesWriter;
+    private int namesWritten;
+    private NpcTrackingView view;
+    private ScheduledFuture<?> flushTask;
+    private ScheduledFuture<?> compactTask;
+    private final List<Snapshot> snapshots = new ArrayList<>();
+
+    // Records appended since the last flush, guarded by pendingLock
+    private long appendedRecords;
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_PENDING_RECORDS * PENDING_RECORD_BYTES);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_PENDING_RECORDS * PENDING_RECORD_BYTES);
+
+    private KillJournal(File directory, List<String> names)
+    {
+        this.directory = directory;
+        this.names = names;
+        this.namesWritten = names.size();
+    }
+
+    /**
+     * Opens the newest journal generation in the directory, creating an empty
+     * journal if there is none, and removes generations left behind by an
+     * earlier compaction.
+     */
+    static KillJournal open(File directory) throws IOException
+    {
+        Files.createDirectories(directory.toPath());
+
+        KillJournal journal = new KillJournal(directory, readNames(new File(directory, NAMES_FILE)));
+        int newest = -1;
+        for (int generation : listGenerations(directory))
+        {
+            newest = Math.max(newest, generation);
+        }
+
+        synchronized (journal)
+        {
+            journal.map(Math.max(newest, 0), newest < 0);
+            journal.namesWriter = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(directory, NAMES_FILE), true), StandardCharsets.UTF_8));
+        }
+        journal.deleteOldGenerations();
+
+        log.debug("Opened kill journal generation {} with {} records", journal.generation,
+            (journal.endOffset - HEADER_BYTES) / RECORD_BYTES);
+        return journal;
+    }
+
+    /**
+     * NPC names in key order, as they were when the journal was opened.
+     */
+    List<String> getNames()
+    {
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Starts the periodic flush and compaction. New NPC names are taken from
+     * the view as their records are flushed.
+     */
+    synchronized void start(ScheduledExecutorService executor, NpcTrackingView view, LongSupplier retentionCutoffMillis)
+    {
+        this.view = view;
+        flushTask = executor.scheduleWithFixedDelay(this::flushQuietly,
+            FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        compactTask = executor.scheduleWithFixedDelay(() -> compactQuietly(retentionCutoffMillis.getAsLong()),
+            0, COMPACT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Queues a record. Called on the client thread; never touches the file.
+     */
+    void append(int type, int key, long epochMillis, long value)
+    {
+        synchronized (pendingLock)
+        {
+            if (pending.remaining() < PENDING_RECORD_BYTES)
+            {
+                ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+
+            pending.putLong(epochMillis);
+            pending.putInt(type << 24 | key & KEY_MASK);
+            pending.putLong(value);
+            appendedRecords++;
+        }
+    }
+
+    /**
+     * Number of records appended since the journal was opened. Taken on the
+     * client thread alongside a checkpoint so the checkpoint can later be tied
+     * to its position in the file.
+     */
+    long getAppendedCount()
+    {
+        synchronized (pendingLock)
+        {
+            return appendedRecords;
+        }
+    }
+
+    /**
+     * Records that checkpoint {@code checkpointId} covers the first
+     * {@code appendedCount} records appended this session, and everything
+     * before them.
+     */
+    synchronized void markCheckpoint(int checkpointId, long appendedCount) throws IOException
+    {
+        flush();
+        if (channel == null)
+        {
+            return;
+        }
+
+        // Every record appended up to the mark has been flushed; anything after it is at the end
+        int offset = endOffset - (int) (flushedRecords - appendedCount) * RECORD_BYTES;
+        mapped.putInt(CHECKPOINT_OFFSET_POSITION, offset);
+        mapped.putInt(CHECKPOINT_ID_POSITION, checkpointId);
+    }
+
+    /**
+     * Id of the last checkpoint marked in this journal, or 0 if there is none.
+     */
+    synchronized int getCheckpointId()
+    {
+        return mapped.getInt(CHECKPOINT_ID_POSITION);
+    }
+
+    /**
+     * Offset of the first record not covered by the last checkpoint.
+     */
+    synchronized int getCheckpointOffset()
+    {
+        return Math.max(HEADER_BYTES, Math.min(mapped.getInt(CHECKPOINT_OFFSET_POSITION), endOffset));
+    }
+
+    /**
+     * Replays every record from the start of the journal.
+     */
+    void replay(Visitor visitor)
+    {
+        replay(HEADER_BYTES, visitor);
+    }
+
+    /**
+     * Replays the records from a file offset onwards, such as the tail after
+     * a checkpoint. Holding the journal's monitor across several replays
+     * guarantees they all see the same records.
+     */
+    synchronized void replay(int fromOffset, Visitor visitor)
+    {
+        if (mapped == null)
+        {
+            return;
+        }
+
+        for (int position = fromOffset; position < endOffset; position += RECORD_BYTES)
+        {
+            int typeAndKey = mapped.getInt(position + 4);
+            visitor.visit(typeAndKey >>> 24, typeAndKey & KEY_MASK, recordEpochMillis(position), mapped.getLong(position + 8));
+        }
+    }
+
+    /**
+     * Flushes what is queued and takes a snapshot of every record so far,
+     * for reading on another thread.
+     */
+    synchronized Snapshot snapshot() throws IOException
+    {
+        flush();
+        if (channel == null)
+        {
+            throw new IOException("Kill journal is closed");
+        }
+
+        FileChannel reader = FileChannel.open(generationFile(generation).toPath(), StandardOpenOption.READ);
+        try
+        {
+            Snapshot snapshot = new Snapshot(this, reader, reader.map(FileChannel.MapMode.READ_ONLY, 0, endOffset),
+                baseEpochSecond, endOffset);
+            snapshots.add(snapshot);
+            return snapshot;
+        }
+        catch (IOException e)
+        {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves queued records into the mapping. Runs on the executor, and
+     * once more when the journal is closed.
+     */
+    synchronized void flush() throws IOException
+    {
+        if (channel == null)
+        {
+            return;
+        }
+
+        ByteBuffer records;
+        synchronized (pendingLock)
+        {
+            if (pending.position() == 0)
+            {
+                return;
+            }
+
+            records = pending;
+            pending = spare;
+            spare = records;
+        }
+
+        writeNewNames();
+
+        records.flip();
+        ensureCapacity(endOffset + records.remaining() / PENDING_RECORD_BYTES * RECORD_BYTES);
+        while (records.hasRemaining())
+        {
+            long epochMillis = records.getLong();
+            int typeAndKey = records.getInt();
+            long value = records.getLong();
+
+            mapped.putInt(endOffset, toSeconds(epochMillis));
+            mapped.putLong(endOffset + 8, value);
+            // The type is written last so a torn record reads as the end of the log
+            mapped.putInt(endOffset + 4, typeAndKey);
+            endOffset += RECORD_BYTES;
+            flushedRecords++;
+        }
+        records.clear();
+
+        mapped.putLong(END_OFFSET_POSITION, endOffset);
+    }
+
+    /**
+     * Rewrites the journal without the kill and reset records older than the
+     * cutoff. The most recent slayer task record is always kept, and so are
+     * resets the last checkpoint does not cover, since they undo totals it
+     * restores. Older GP records are summed per NPC into the last of them, on
+     * each side of the checkpoint offset so the tail replayed after a
+     * checkpoint never repeats GP it already holds; NPCs without a kill left
+     * lose their GP along with them, as they do while tracking.
+     */
+    synchronized void compact(long cutoffEpochMillis) throws IOException
+    {
+        flush();
+        if (channel == null)
+        {
+            return;
+        }
+
+        int checkpointOffset = mapped.getInt(CHECKPOINT_OFFSET_POSITION);
+        int keyLimit = 0;
+        for (int position = HEADER_BYTES; position < endOffset; position += RECORD_BYTES)
+        {
+            int type = mapped.getInt(position + 4) >>> 24;
+            if (type == TYPE_KILL || type == TYPE_GP)
+            {
+                keyLimit = Math.max(keyLimit, (mapped.getInt(position + 4) & KEY_MASK) + 1);
+            }
+        }
+
+        // Two folds per NPC: before the checkpoint offset at 2 * key, after it at 2 * key + 1
+        long[] foldedGp = new long[2 * keyLimit];
+        int[] lastFolded = new int[2 * keyLimit];
+        boolean[] killKept = new boolean[keyLimit];
+        int lastSlayerTask = -1;
+        for (int position = HEADER_BYTES; position < endOffset; position += RECORD_BYTES)
+        {
+            int typeAndKey = mapped.getInt(position + 4);
+            int type = typeAndKey >>> 24;
+            int key = typeAndKey & KEY_MASK;
+            boolean old = recordEpochMillis(position) < cutoffEpochMillis;
+            if (type == TYPE_SLAYER_TASK)
+            {
+                lastSlayerTask = position;
+            }
+            else if (type == TYPE_KILL && !old)
+            {
+                killKept[key] = true;
+            }
+            else if (type == TYPE_GP && old)
+            {
+                int fold = 2 * key + (position < checkpointOffset ? 0 : 1);
+                foldedGp[fold] += mapped.getLong(position + 8);
+                lastFolded[fold] = position;
+            }
+            else if (type == TYPE_RESET)
+            {
+                if (key == ALL_KEYS)
+                {
+                    Arrays.fill(foldedGp, 0);
+                }
+                else if (key < keyLimit)
+                {
+                    foldedGp[2 * key] = 0;
+                    foldedGp[2 * key + 1] = 0;
+                }
+            }
+        }
+
+        int dropped = 0;
+        for (int position = HEADER_BYTES; position < endOffset; position += RECORD_BYTES)
+        {
+            if (!keep(position, cutoffEpochMillis, checkpointOffset, lastSlayerTask, foldedGp, lastFolded, killKept))
+            {
+                dropped++;
+            }
+        }
+        if (dropped == 0)
+        {
+            return;
+        }
+
+        int nextGeneration = generation + 1;
+        File temp = new File(directory, JOURNAL_PREFIX + nextGeneration + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_BYTES);
+            int kept = 0;
+            // The checkpoint offset moves down by the records dropped ahead of it
+            int movedCheckpointOffset = HEADER_BYTES;
+            writeHeader(buffer, 0);
+            for (int position = HEADER_BYTES; position < endOffset; position += RECORD_BYTES)
+            {
+                if (!keep(position, cutoffEpochMillis, checkpointOffset, lastSlayerTask, foldedGp, lastFolded, killKept))
+                {
+                    continue;
+                }
+
+                if (position < checkpointOffset)
+                {
+                    movedCheckpointOffset += RECORD_BYTES;
+                }
+
+                int typeAndKey = mapped.getInt(position + 4);
+                long value = mapped.getLong(position + 8);
+                if (typeAndKey >>> 24 == TYPE_GP && recordEpochMillis(position) < cutoffEpochMillis)
+                {
+                    value = foldedGp[2 * (typeAndKey & KEY_MASK) + (position < checkpointOffset ? 0 : 1)];
+                }
+
+                if (buffer.remaining() < RECORD_BYTES)
+                {
+                    writeFully(out, buffer);
+                }
+                buffer.putInt(mapped.getInt(position));
+                buffer.putInt(typeAndKey);
+                buffer.putLong(value);
+                kept++;
+            }
+            writeFully(out, buffer);
+
+            buffer.putLong(0, HEADER_BYTES + (long) kept * RECORD_BYTES);
+            buffer.putInt(8, mapped.getInt(CHECKPOINT_ID_POSITION));
+            buffer.putInt(12, movedCheckpointOffset);
+            buffer.limit(16);
+            out.write(buffer, END_OFFSET_POSITION);
+            out.force(true);
+        }
+
+        File target = generationFile(nextGeneration);
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        closeMapping();
+        map(nextGeneration, false);
+        log.debug("Compacted kill journal, dropped {} records", dropped);
+        deleteOldGenerations();
+    }
+
+    /**
+     * Whether compaction copies the record at {@code position}. An old GP
+     * record is copied only where its NPC's fold is written.
+     */
+    private boolean keep(int position, long cutoffEpochMillis, int checkpointOffset, int lastSlayerTask,
+        long[] foldedGp, int[] lastFolded, boolean[] killKept)
+    {
+        if (recordEpochMillis(position) >= cutoffEpochMillis)
+        {
+            return true;
+        }
+
+        int typeAndKey = mapped.getInt(position + 4);
+        int key = typeAndKey & KEY_MASK;
+        switch (typeAndKey >>> 24)
+        {
+            case TYPE_SLAYER_TASK:
+                return position == lastSlayerTask;
+            case TYPE_RESET:
+                return position >= checkpointOffset;
+            case TYPE_GP:
+                int fold = 2 * key + (position < checkpointOffset ? 0 : 1);
+                return killKept[key] && foldedGp[fold] != 0 && lastFolded[fold] == position;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Stops the background tasks, cancels open snapshots, flushes what is
+     * queued and closes the files.
+     */
+    synchronized void close()
+    {
+        if (flushTask != null)
+        {
+            flushTask.cancel(false);
+            compactTask.cancel(false);
+        }
+        for (Snapshot snapshot : snapshots)
+        {
+            snapshot.cancelled = true;
+        }
+
+        try
+        {
+            flush();
+            if (mapped != null)
+            {
+                mapped.force();
+            }
+            namesWriter.close();
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to flush kill journal", e);
+        }
+        closeMapping();
+    }
+
+    private void flushQuietly()
+    {
+        try
+        {
+            flush();
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to write kill journal", e);
+        }
+    }
+
+    private void compactQuietly(long cutoffEpochMillis)
+    {
+        try
+        {
+            compact(cutoffEpochMillis);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to compact kill journal", e);
+        }
+    }
+
+    private void map(int generation, boolean create) throws IOException
+    {
+        File file = generationFile(generation);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.generation = generation;
+
+        if (create || channel.size() < HEADER_BYTES)
+        {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, GROW_BYTES);
+            baseEpochSecond = System.currentTimeMillis() / 1000;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            writeHeader(header, HEADER_BYTES);
+            header.flip();
+            mapped.put(header);
+            endOffset = HEADER_BYTES;
+            return;
+        }
+
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+        {
+            throw new IOException("Journal " + file + " is too large");
+        }
+
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, roundUp(size));
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION)
+        {
+            closeMapping();
+            throw new IOException("Journal " + file + " has an unrecognised header");
+        }
+
+        baseEpochSecond = mapped.getLong(8);
+        // Records flushed after the end offset was last stored are still valid
+        int offset = (int) Math.max(HEADER_BYTES, Math.min(mapped.getLong(END_OFFSET_POSITION), mapped.capacity()));
+        while (offset + RECORD_BYTES <= mapped.capacity() && mapped.getInt(offset + 4) != 0)
+        {
+            offset += RECORD_BYTES;
+        }
+        endOffset = offset;
+    }
+
+    private void closeMapping()
+    {
+        mapped = null;
+        if (channel != null)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                log.debug("Unable to close kill journal", e);
+            }
+            channel = null;
+        }
+    }
+
+    private void ensureCapacity(int required) throws IOException
+    {
+        if (required > mapped.capacity())
+        {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, roundUp(required));
+        }
+    }
+
+    private void writeHeader(ByteBuffer buffer, long endOffset)
+    {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(baseEpochSecond);
+        buffer.putLong(endOffset);
+        buffer.putInt(0);
+        buffer.putInt(HEADER_BYTES);
+    }
+
+    private void writeNewNames() throws IOException
+    {
+        if (view == null)
+        {
+            return;
+        }
+
+        int size = view.size();
+        if (namesWritten >= size)
+        {
+            return;
+        }
+
+        for (int key = namesWritten; key < size; key++)
+        {
+            namesWriter.write(view.getName(key));
+            namesWriter.write('\n');
+        }
+        namesWriter.flush();
+        namesWritten = size;
+    }
+
+    private long recordEpochMillis(int position)
+    {
+        return recordEpochMillis(mapped, baseEpochSecond, position);
+    }
+
+    private static long recordEpochMillis(ByteBuffer mapped, long baseEpochSecond, int position)
+    {
+        return (baseEpochSecond + Integer.toUnsignedLong(mapped.getInt(position))) * 1000;
+    }
+
+    private int toSeconds(long epochMillis)
+    {
+        return (int) Math.max(0, epochMillis / 1000 - baseEpochSecond);
+    }
+
+    private File generationFile(int generation)
+    {
+        return new File(directory, JOURNAL_PREFIX + generation + JOURNAL_SUFFIX);
+    }
+
+    private void deleteOldGenerations()
+    {
+        for (int old : listGenerations(directory))
+        {
+            // A file still mapped on Windows cannot be deleted yet; the next open retries
+            if (old < generation && !generationFile(old).delete())
+            {
+                log.debug("Unable to delete kill journal generation {}", old);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static long roundUp(long size)
+    {
+        return Math.max(GROW_BYTES, (size + GROW_BYTES - 1) / GROW_BYTES * GROW_BYTES);
+    }
+
+    private static List<Integer> listGenerations(File directory)
+    {
+        List<Integer> generations = new ArrayList<>();
+        String[] files = directory.list();
+        if (files == null)
+        {
+            return generations;
+        }
+
+        for (String file : files)
+        {
+            if (file.startsWith(JOURNAL_PREFIX) && file.endsWith(JOURNAL_SUFFIX))
+            {
+                try
+                {
+                    generations.add(Integer.parseInt(file.substring(JOURNAL_PREFIX.length(), file.length() - JOURNAL_SUFFIX.length())));
+                }
+                catch (NumberFormatException e)
+                {
+                    log.debug("Ignoring unexpected journal file {}", file);
+                }
+            }
+        }
+        return generations;
+    }
+
+    private static List<String> readNames(File file) throws IOException
+    {
+        List<String> names = new ArrayList<>();
+        if (!file.exists())
+        {
+            return names;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                names.add(line);
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,224 @@
+package com.npckphtracker;
+
+import java.util.Arrays;
+
+/**
+ * Ranking of tracked NPCs by a score such as recent KPH, kept as an indexed
+ * binary max-heap over store keys. Changing one NPC's score moves only that
+ * entry, in O(log n), and the top N are read by walking the top of the heap
+ * without sorting the rest. Ties go to the NPC seen first. Client thread only.
+ */
+class NpcLeaderboard
+{
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int ABSENT = -1;
+
+    // Keys in heap order
+    private int[] heap = new int[INITIAL_CAPACITY];
+    // Heap index of each key, or ABSENT
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private double[] scores = new double[INITIAL_CAPACITY];
+    private int size;
+    // Heap indexes still to visit when reading the top entries
+    private int[] candidates = new int[INITIAL_CAPACITY];
+    private int modCount;
+
+    NpcLeaderboard()
+    {
+        Arrays.fill(positions, ABSENT);
+    }
+
+    boolean contains(int key)
+    {
+        return key < positions.length && positions[key] != ABSENT;
+    }
+
+    double getScore(int key)
+    {
+        return contains(key) ? scores[key] : 0.0;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Changes on every update, so callers can tell whether the ranking moved.
+     */
+    int getModCount()
+    {
+        return modCount;
+    }
+
+    /**
+     * Adds an NPC or changes its score.
+     */
+    void update(int key, double score)
+    {
+        if (key >= positions.length)
+        {
+            int capacity = Math.max(key + 1, positions.length * 2);
+            int oldLength = positions.length;
+            positions = Arrays.copyOf(positions, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            Arrays.fill(positions, oldLength, capacity, ABSENT);
+        }
+
+        int position = positions[key];
+        if (position == ABSENT)
+        {
+            scores[key] = score;
+            heap[size] = key;
+            positions[key] = size;
+            siftUp(size++);
+            modCount++;
+            return;
+        }
+
+        double previous = scores[key];
+        if (previous == score)
+        {
+            return;
+        }
+
+        scores[key] = score;
+        if (score > previous)
+        {
+            siftUp(position);
+        }
+        else
+        {
+            siftDown(position);
+        }
+        modCount++;
+    }
+
+    void remove(int key)
+    {
+        if (!contains(key))
+        {
+            return;
+        }
+
+        int position = positions[key];
+        positions[key] = ABSENT;
+        int last = heap[--size];
+        if (position < size)
+        {
+            heap[position] = last;
+            positions[last] = position;
+            siftDown(position);
+            siftUp(positions[last]);
+        }
+        modCount++;
+    }
+
+    void clear()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            positions[heap[i]] = ABSENT;
+        }
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Fills {@code out} with up to {@code out.length} keys, best first, and
+     * returns how many were written. Visits O(N log N) heap entries for the
+     * top N, however many NPCs are ranked.
+     */
+    int top(int[] out)
+    {
+        if (candidates.length < out.length + 1)
+        {
+            candidates = new int[out.length + 1];
+        }
+
+        int count = 0;
+        int pending = 0;
+        if (size > 0)
+        {
+            candidates[pending++] = 0;
+        }
+
+        while (count < out.length && pending > 0)
+        {
+            // The list stays at most N + 1 long, so a linear scan is cheapest
+            int best = 0;
+            for (int i = 1; i < pending; i++)
+            {
+                if (ranksAbove(heap[candidates[i]], heap[candidates[best]]))
+                {
+                    best = i;
+                }
+            }
+
+            int index = candidates[best];
+            candidates[best] = candidates[--pending];
+            out[count++] = heap[index];
+
+            int child = 2 * index + 1;
+            if (child < size)
+            {
+                candidates[pending++] = child;
+            }
+            if (child + 1 < size)
+            {
+                candidates[pending++] = child + 1;
+            }
+        }
+        return count;
+    }
+
+    private boolean ranksAbove(int key, int other)
+    {
+        return scores[key] > scores[other] || (scores[key] == scores[other] && key < other);
+    }
+
+    private void siftUp(int index)
+    {
+        int key = heap[index];
+        while (index > 0)
+        {
+            int parent = (index - 1) / 2;
+            if (!ranksAbove(key, heap[parent]))
+            {
+                break;
+            }
+            heap[index] = heap[parent];
+            positions[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = key;
+        positions[key] = index;
+    }
+
+    private void siftDown(int index)
+    {
+        int key = heap[index];
+        while (true)
+        {
+            int child = 2 * index + 1;
+            if (child >= size)
+            {
+                break;
+            }
+            if (child + 1 < size && ranksAbove(heap[child + 1], heap[child]))
+            {
+                child++;
+            }
+            if (!ranksAbove(heap[child], key))
+            {
+                break;
+            }
+            heap[index] = heap[child];
+            positions[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = key;
+        positions[key] = index;
+    }
+}
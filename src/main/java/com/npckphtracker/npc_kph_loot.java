@@ -0,0 +1,75 @@
+package com.npckphtracker;
+
+import net.runelite.api.coords.WorldPoint;
+
+import java.util.Arrays;
+
+/**
+ * Short ring buffer of recent NPC deaths keyed by death tile and tick, used to
+ * match a loot drop back to the kill that produced it. Drops appear a few ticks
+ * after the death animation on the tile the NPC died on, so only the most
+ * recent few dozen deaths ever need to be considered.
+ */
+class RecentDeaths
+{
+    static final int CAPACITY = 32;
+    // Long death animations (bosses, demi-bosses) can delay the drop by several ticks
+    static final int MAX_LOOT_DELAY_TICKS = 20;
+
+    private final int[] tiles = new int[CAPACITY];
+    private final int[] ticks = new int[CAPACITY];
+    private final int[] owners = new int[CAPACITY];
+    private int next;
+    private int count;
+
+    static int packTile(WorldPoint point)
+    {
+        return point.getPlane() << 28 | (point.getX() & 0x3FFF) << 14 | (point.getY() & 0x3FFF);
+    }
+
+    RecentDeaths()
+    {
+        clear();
+    }
+
+    void record(int tile, int tick, int owner)
+    {
+        tiles[next] = tile;
+        ticks[next] = tick;
+        owners[next] = owner;
+        next = (next + 1) % CAPACITY;
+        count = Math.min(count + 1, CAPACITY);
+    }
+
+    /**
+     * Finds and consumes the most recent unclaimed death on the tile within the
+     * loot delay window, returning the tracking key of the NPC that died, or
+     * {@link NpcTrackingStore#NO_KEY} when no kill matches.
+     */
+    int claim(int tile, int now)
+    {
+        for (int i = 1; i <= count; i++)
+        {
+            int slot = (next - i + CAPACITY) % CAPACITY;
+            if (now - ticks[slot] > MAX_LOOT_DELAY_TICKS)
+            {
+                break;
+            }
+
+            if (tiles[slot] == tile && owners[slot] != NpcTrackingStore.NO_KEY)
+            {
+                int owner = owners[slot];
+                owners[slot] = NpcTrackingStore.NO_KEY;
+                return owner;
+            }
+        }
+        return NpcTrackingStore.NO_KEY;
+    }
+
+    void clear()
+    {
+        Arrays.fill(owners, NpcTrackingStore.NO_KEY);
+        next = 0;
+        count = 0;
+    }
+}
@@ -0,0 +1,419 @@
+package com.npckphtracker;
+
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LayoutableRenderableEntity;
+import net.runelite.client.ui.overlay.components.LineComponent;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+import java.awt.*;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of everything the overlay draws. Built by the plugin on
+ * the client thread from the tracked NPC's {@link NpcStats}, or from the
+ * leaderboard in leaderboard mode, once per game tick and again after a kill
+ * or a config change, so the overlay's render pass only hands prebuilt
+ * components to the panel and never formats text or touches tracking data.
+ */
+class OverlayViewModel
+{
+    static final OverlayViewModel EMPTY = new OverlayViewModel(Collections.emptyList(), OverlayPosition.TOP_LEFT);
+
+    private static final DecimalFormat KPH_FORMAT = new DecimalFormat("#.#");
+    private static final DecimalFormat GP_FORMAT = new DecimalFormat("#,###");
+    private static final DecimalFormat GP_DECIMAL_FORMAT = new DecimalFormat("#,###.#");
+    private static final Color TITLE_COLOR = Color.WHITE;
+    private static final Color TEXT_COLOR = Color.LIGHT_GRAY;
+    private static final Color HIGHLIGHT_COLOR = Color.YELLOW;
+
+    private final List<LayoutableRenderableEntity> components;
+    private final OverlayPosition position;
+
+    private OverlayViewModel(List<LayoutableRenderableEntity> components, OverlayPosition position)
+    {
+        this.components = components;
+        this.position = position;
+    }
+
+    List<LayoutableRenderableEntity> getComponents()
+    {
+        return components;
+    }
+
+    OverlayPosition getPosition()
+    {
+        return position;
+    }
+
+    boolean isEmpty()
+    {
+        return components.isEmpty();
+    }
+
+    static OverlayViewModel build(NpcKphTrackerPlugin plugin, NpcKphTrackerConfig config)
+    {
+        if (!config.showOverlay() || !plugin.isTracking())
+        {
+            return EMPTY;
+        }
+
+        return build(config, plugin.getCurrentTrackedNpc(), plugin.getCurrentTrackedStats(),
+            plugin.getCurrentSlayerTask(), plugin.getEstimatedTimeRemaining());
+    }
+
+    /**
+     * Builds the overlay from explicit inputs rather than the plugin, so it
+     * can also be driven by benchmarks and replays.
+     */
+    static OverlayViewModel build(NpcKphTrackerConfig config, String trackedNpc, NpcStats stats,
+        SlayerTaskData slayerTask, String timeEstimate)
+    {
+        if (!config.showOverlay() || trackedNpc == null || stats.getKillCount() == 0)
+        {
+            return EMPTY;
+        }
+
+        List<LayoutableRenderableEntity> lines = new ArrayList<>();
+
+        // Title
+        lines.add(TitleComponent.builder()
+            .text("NPC KPH Tracker")
+            .color(TITLE_COLOR)
+            .build());
+
+        // Slayer task information
+        boolean isSlayerTask = slayerTask != null && slayerTask.getTaskName().equalsIgnoreCase(trackedNpc);
+
+        // Current NPC being tracked
+        String displayName = trackedNpc;
+        if (isSlayerTask)
+        {
+            displayName = trackedNpc + " (Slayer)";
+        }
+        
+        lines.add(LineComponent.builder()
+            .left("Tracking:")
+            .right(displayName)
+            .leftColor(TEXT_COLOR)
+            .rightColor(isSlayerTask ? Color.MAGENTA : HIGHLIGHT_COLOR)
+            .build());
+
+        if (config.showSlayerInfo() && isSlayerTask)
+        {
+            // Task progress
+            lines.add(LineComponent.builder()
+                .left("Task Progress:")
+                .right(slayerTask.getCompleted() + "/" + slayerTask.getOriginalAmount())
+                .leftColor(TEXT_COLOR)
+                .rightColor(Color.CYAN)
+                .build());
+                
+            // Remaining
+            lines.add(LineComponent.builder()
+                .left("Remaining:")
+                .right(String.valueOf(slayerTask.getRemaining()))
+                .leftColor(TEXT_COLOR)
+                .rightColor(Color.ORANGE)
+                .build());
+                
+            // Progress percentage
+            double progress = slayerTask.getProgressPercentage();
+            lines.add(LineComponent.builder()
+                .left("Progress:")
+                .right(String.format("%.1f%%", progress))
+                .leftColor(TEXT_COLOR)
+                .rightColor(getProgressColor(progress))
+                .build());
+        }
+
+        // Kill count
+        if (config.showKillCount())
+        {
+            lines.add(LineComponent.builder()
+                .left("Kills:")
+                .right(String.valueOf(stats.getKillCount()))
+                .leftColor(TEXT_COLOR)
+                .rightColor(Color.WHITE)
+                .build());
+        }
+
+        // Total KPH
+        if (config.showTotalKph())
+        {
+            double totalKph = stats.getKillsPerHour();
+            String kphText = totalKph > 0 ? KPH_FORMAT.format(totalKph) : "0";
+            
+            lines.add(LineComponent.builder()
+                .left("Total KPH:")
+                .right(kphText)
+                .leftColor(TEXT_COLOR)
+                .rightColor(getKphColor(totalKph))
+                .build());
+        }
+
+        boolean smoothed = config.rateMode() == NpcKphTrackerConfig.RateMode.SMOOTHED;
+
+        // Recent KPH, over the window or as the smoothed pace
+        if (config.showRecentKph())
+        {
+            double recentKph = stats.getRecentKillsPerHour(config.rateMode());
+            String recentKphText = recentKph > 0 ? KPH_FORMAT.format(recentKph) : "0";
+            
+            lines.add(LineComponent.builder()
+                .left(smoothed ? "Pace KPH:" : "Recent KPH (" + config.recentTimeMinutes() + "m):")
+                .right(recentKphText)
+                .leftColor(TEXT_COLOR)
+                .rightColor(getKphColor(recentKph))
+                .build());
+        }
+
+        // Short/medium/long KPH breakdown
+        if (config.showKphBreakdown())
+        {
+            lines.add(LineComponent.builder()
+                .left("KPH 5/15/60m:")
+                .right(KPH_FORMAT.format(stats.getBreakdownKillsPerHour(0)) + " / "
+                    + KPH_FORMAT.format(stats.getBreakdownKillsPerHour(1)) + " / "
+                    + KPH_FORMAT.format(stats.getBreakdownKillsPerHour(2)))
+                .leftColor(TEXT_COLOR)
+                .rightColor(getKphColor(stats.getBreakdownKillsPerHour(1)))
+                .build());
+        }
+
+        // Time estimate for slayer task
+        if (config.showTimeEstimate() && isSlayerTask)
+        {
+            if (timeEstimate != null)
+            {
+                lines.add(LineComponent.builder()
+                    .left("Est. Time:")
+                    .right(timeEstimate)
+                    .leftColor(TEXT_COLOR)
+                    .rightColor(Color.GREEN)
+                    .build());
+            }
+        }
+
+        // GP Tracking
+        if (config.showGpTracking())
+        {
+            // Total GP gained
+            long totalGp = stats.getTotalGpGained();
+            if (totalGp > 0)
+            {
+                lines.add(LineComponent.builder()
+                    .left("Total GP:")
+                    .right(formatGp(totalGp))
+                    .leftColor(TEXT_COLOR)
+                    .rightColor(Color.YELLOW)
+                    .build());
+            }
+            
+            // Average GP per kill
+            if (config.showAvgGpPerKill())
+            {
+                double avgGpPerKill = stats.getAverageGpPerKill();
+                if (avgGpPerKill > 0)
+                {
+                    lines.add(LineComponent.builder()
+                        .left("Avg GP/Kill:")
+                        .right(formatGp((long)avgGpPerKill))
+                        .leftColor(TEXT_COLOR)
+                        .rightColor(Color.GREEN)
+                        .build());
+                }
+            }
+            
+            // GP per hour
+            if (config.showGpPerHour())
+            {
+                double gpPerHour = stats.getGpPerHour(config.rateMode());
+                if (gpPerHour > 0)
+                {
+                    lines.add(LineComponent.builder()
+                        .left(smoothed ? "Pace GP/Hour:" : "GP/Hour:")
+                        .right(formatGp((long)gpPerHour))
+                        .leftColor(TEXT_COLOR)
+                        .rightColor(getGpPerHourColor(gpPerHour))
+                        .build());
+                }
+            }
+        }
+
+        // Session time
+        if (stats.getFirstKillTick() != NpcTrackingData.NO_KILL)
+        {
+            long sessionMinutes = stats.getSessionTicks() / TickClock.TICKS_PER_MINUTE;
+            String sessionTime = formatTime(sessionMinutes);
+            
+            lines.add(LineComponent.builder()
+                .left("Session:")
+                .right(sessionTime)
+                .leftColor(TEXT_COLOR)
+                .rightColor(Color.CYAN)
+                .build());
+        }
+
+        return new OverlayViewModel(Collections.unmodifiableList(lines), mapConfigPosition(config));
+    }
+
+    /**
+     * Builds the compact leaderboard from NPC names and scores already in
+     * rank order, best first.
+     */
+    static OverlayViewModel buildLeaderboard(NpcKphTrackerConfig config, String[] names, double[] scores,
+        String trackedNpc)
+    {
+        if (!config.showOverlay() || names.length == 0)
+        {
+            return EMPTY;
+        }
+
+        boolean byGp = config.leaderboardMetric() == NpcKphTrackerConfig.LeaderboardMetric.GP_PER_HOUR;
+        List<LayoutableRenderableEntity> lines = new ArrayList<>(names.length + 1);
+
+        // Title
+        lines.add(TitleComponent.builder()
+            .text(byGp ? "Top NPCs (GP/Hour)" : config.rateMode() == NpcKphTrackerConfig.RateMode.SMOOTHED
+                ? "Top NPCs (Pace KPH)" : "Top NPCs (KPH " + config.recentTimeMinutes() + "m)")
+            .color(TITLE_COLOR)
+            .build());
+
+        for (int i = 0; i < names.length; i++)
+        {
+            double score = scores[i];
+            String scoreText;
+            if (byGp)
+            {
+                scoreText = formatGp((long) score);
+            }
+            else
+            {
+                scoreText = score > 0 ? KPH_FORMAT.format(score) : "0";
+            }
+
+            lines.add(LineComponent.builder()
+                .left((i + 1) + ". " + names[i])
+                .right(scoreText)
+                .leftColor(names[i].equals(trackedNpc) ? HIGHLIGHT_COLOR : TEXT_COLOR)
+                .rightColor(byGp ? getGpPerHourColor(score) : getKphColor(score))
+                .build());
+        }
+
+        return new OverlayViewModel(Collections.unmodifiableList(lines), mapConfigPosition(config));
+    }
+
+    private static OverlayPosition mapConfigPosition(NpcKphTrackerConfig config)
+    {
+        switch (config.overlayPosition())
+        {
+            case TOP_LEFT:
+                return OverlayPosition.TOP_LEFT;
+            case TOP_RIGHT:
+                return OverlayPosition.TOP_RIGHT;
+            case BOTTOM_LEFT:
+                return OverlayPosition.BOTTOM_LEFT;
+            case BOTTOM_RIGHT:
+                return OverlayPosition.BOTTOM_RIGHT;
+            default:
+                return OverlayPosition.TOP_LEFT;
+        }
+    }
+
+    private static Color getKphColor(double kph)
+    {
+        if (kph >= 100)
+        {
+            return Color.GREEN;
+        }
+        else if (kph >= 50)
+        {
+            return Color.YELLOW;
+        }
+        else if (kph > 0)
+        {
+            return Color.ORANGE;
+        }
+        else
+        {
+            return Color.RED;
+        }
+    }
+
+    private static Color getProgressColor(double progress)
+    {
+        if (progress >= 75)
+        {
+            return Color.GREEN;
+        }
+        else if (progress >= 50)
+        {
+            return Color.YELLOW;
+        }
+        else if (progress >= 25)
+        {
+            return Color.ORANGE;
+        }
+        else
+        {
+            return Color.RED;
+        }
+    }
+
+    private static Color getGpPerHourColor(double gpPerHour)
+    {
+        if (gpPerHour >= 2000000) // 2M+ GP/hr
+        {
+            return Color.GREEN;
+        }
+        else if (gpPerHour >= 1000000) // 1M+ GP/hr
+        {
+            return Color.YELLOW;
+        }
+        else if (gpPerHour >= 500000) // 500K+ GP/hr
+        {
+            return Color.ORANGE;
+        }
+        else if (gpPerHour > 0)
+        {
+            return Color.WHITE;
+        }
+        else
+        {
+            return Color.RED;
+        }
+    }
+
+    private static String formatGp(long gp)
+    {
+        if (gp >= 1000000)
+        {
+            return GP_DECIMAL_FORMAT.format(gp / 1000000.0) + "M";
+        }
+        else if (gp >= 1000)
+        {
+            return GP_DECIMAL_FORMAT.format(gp / 1000.0) + "K";
+        }
+        else
+        {
+            return GP_FORMAT.format(gp);
+        }
+    }
+
+    private static String formatTime(long minutes)
+    {
+        if (minutes < 60)
+        {
+            return minutes + "m";
+        }
+        else
+        {
+            long hours = minutes / 60;
+            long remainingMinutes = minutes % 60;
+            return hours + "h " + remainingMinutes + "m";
+        }
+    }
+}
@@ -5,11 +5,12 @@ import net.runelite.client.ui.PluginPanel;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 import java.text.DecimalFormat;
-import java.util.Map;
 
 public class NpcKphTrackerPanel extends PluginPanel
 {
@@ -19,6 +20,11 @@ public class NpcKphTrackerPanel extends PluginPanel
     private final NpcKphTrackerPlugin plugin;
     private final NpcKphTrackerConfig config;
     
+    private final NpcSelectorModel selectorModel = new NpcSelectorModel();
+    private volatile boolean active;
+    // Set while the panel moves the selection itself, so the listener ignores it
+    private boolean syncingSelection;
+
     private JPanel contentPanel;
     private JComboBox<String> npcSelector;
     private JLabel statusLabel;
@@ -27,12 +33,18 @@ public class NpcKphTrackerPanel extends PluginPanel
     private JLabel totalKphLabel;
     private JLabel recentKphLabel;
     private JLabel sessionTimeLabel;
+    private JLabel killTimeLabel;
+    private JLabel worstGapLabel;
     private JLabel slayerTaskLabel;
     private JLabel taskProgressLabel;
     private JLabel timeEstimateLabel;
     private JLabel totalGpLabel;
     private JLabel avgGpPerKillLabel;
     private JLabel gpPerHourLabel;
+    private JLabel priceCacheLabel;
+    private JLabel allocationLabel;
+    private JButton exportButton;
+    private JLabel exportStatusLabel;
     
     public NpcKphTrackerPanel(NpcKphTrackerPlugin plugin, NpcKphTrackerConfig config)
     {
@@ -66,7 +78,7 @@ public class NpcKphTrackerPanel extends PluginPanel
         JLabel selectorLabel = new JLabel("Track NPC:");
         selectorLabel.setForeground(Color.WHITE);
         
-        npcSelector = new JComboBox<>();
+        npcSelector = new JComboBox<>(selectorModel);
         npcSelector.setPreferredSize(new Dimension(0, 25));
         npcSelector.addActionListener(new NpcSelectorListener());
         
@@ -78,22 +90,30 @@ public class NpcKphTrackerPanel extends PluginPanel
         buttonPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
         
         JButton resetButton = new JButton("Reset Current");
-        resetButton.addActionListener(e -> {
-            plugin.resetTracking();
-            updatePanel();
-        });
+        resetButton.addActionListener(e -> plugin.resetTracking());
         
         JButton resetAllButton = new JButton("Reset All");
-        resetAllButton.addActionListener(e -> {
-            plugin.resetAllTracking();
-            updatePanel();
-        });
+        resetAllButton.addActionListener(e -> plugin.resetAllTracking());
         
         buttonPanel.add(resetButton);
         buttonPanel.add(resetAllButton);
         
+        // Export
+        JPanel exportPanel = new JPanel(new BorderLayout());
+        exportPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
+        
+        exportButton = new JButton("Export History");
+        exportButton.addActionListener(e -> exportHistory());
+        
+        exportStatusLabel = new JLabel(" ");
+        exportStatusLabel.setForeground(Color.LIGHT_GRAY);
+        
+        exportPanel.add(exportButton, BorderLayout.NORTH);
+        exportPanel.add(exportStatusLabel, BorderLayout.SOUTH);
+        
         controlPanel.add(selectorPanel, BorderLayout.NORTH);
-        controlPanel.add(buttonPanel, BorderLayout.SOUTH);
+        controlPanel.add(buttonPanel, BorderLayout.CENTER);
+        controlPanel.add(exportPanel, BorderLayout.SOUTH);
         
         // Info panel
         JPanel infoPanel = createInfoPanel();
@@ -106,8 +126,6 @@ public class NpcKphTrackerPanel extends PluginPanel
         
         add(title, BorderLayout.NORTH);
         add(contentPanel, BorderLayout.CENTER);
-        
-        updatePanel();
     }
     
     private JPanel createInfoPanel()
@@ -149,6 +167,15 @@ public class NpcKphTrackerPanel extends PluginPanel
         sessionTimeLabel.setForeground(Color.WHITE);
         infoPanel.add(sessionTimeLabel);
         
+        // Time between kills
+        killTimeLabel = new JLabel("Kill Time: N/A");
+        killTimeLabel.setForeground(Color.WHITE);
+        infoPanel.add(killTimeLabel);
+        
+        worstGapLabel = new JLabel("Worst Gap: N/A");
+        worstGapLabel.setForeground(Color.WHITE);
+        infoPanel.add(worstGapLabel);
+        
         infoPanel.add(Box.createVerticalStrut(10));
         
         // Slayer task info
@@ -179,173 +206,291 @@ public class NpcKphTrackerPanel extends PluginPanel
         gpPerHourLabel.setForeground(Color.WHITE);
         infoPanel.add(gpPerHourLabel);
         
+        infoPanel.add(Box.createVerticalStrut(10));
+        
+        // Price cache statistics
+        priceCacheLabel = new JLabel("Price Cache: 0 hits / 0 misses");
+        priceCacheLabel.setForeground(Color.LIGHT_GRAY);
+        infoPanel.add(priceCacheLabel);
+
+        // Allocation accounting, only shown while Track Allocations is on
+        allocationLabel = new JLabel();
+        allocationLabel.setForeground(Color.LIGHT_GRAY);
+        allocationLabel.setVisible(false);
+        infoPanel.add(allocationLabel);
+        
         return infoPanel;
     }
     
+    @Override
+    public void onActivate()
+    {
+        active = true;
+        refresh();
+    }
+
+    @Override
+    public void onDeactivate()
+    {
+        active = false;
+    }
+
+    /**
+     * Whether the panel is open in the sidebar and worth refreshing.
+     */
+    boolean isActive()
+    {
+        return active;
+    }
+
     public void updatePanel()
     {
-        SwingUtilities.invokeLater(() -> {
-            updateNpcSelector();
-            updateLabels();
-        });
+        SwingUtilities.invokeLater(this::refresh);
+    }
+
+    /**
+     * Refreshes the selector and labels. Must run on the EDT.
+     */
+    void refresh()
+    {
+        updateNpcSelector();
+        updateLabels();
     }
     
     private void updateNpcSelector()
     {
-        String currentSelection = (String) npcSelector.getSelectedItem();
-        npcSelector.removeAllItems();
-        
-        npcSelector.addItem("-- Select NPC --");
-        
-        Map<String, NpcTrackingData> allData = plugin.getAllTrackingData();
-        for (String npcName : allData.keySet())
-        {
-            npcSelector.addItem(npcName);
-        }
-        
-        // Restore selection if possible
-        if (currentSelection != null)
+        String trackedNpc = plugin.getCurrentTrackedNpc();
+        syncingSelection = true;
+        try
         {
-            npcSelector.setSelectedItem(currentSelection);
+            // Dropping the selected NPC moves the selection to the placeholder,
+            // which must not untrack it
+            selectorModel.sync(plugin.getTrackingView());
+
+            // Follow the plugin when it switches NPC on its own (auto-tracking)
+            selectorModel.setSelectedItem(trackedNpc != null ? trackedNpc : NpcSelectorModel.PLACEHOLDER);
         }
-        else if (plugin.getCurrentTrackedNpc() != null)
+        finally
         {
-            npcSelector.setSelectedItem(plugin.getCurrentTrackedNpc());
+            syncingSelection = false;
         }
     }
     
     private void updateLabels()
     {
+        updatePriceCacheInfo();
+        updateAllocationInfo();
+
         String trackedNpc = plugin.getCurrentTrackedNpc();
         
         if (plugin.isTracking() && trackedNpc != null)
         {
-            statusLabel.setText("Status: Tracking");
+            setText(statusLabel, "Status: Tracking");
             statusLabel.setForeground(Color.GREEN);
-            currentNpcLabel.setText("Current NPC: " + trackedNpc);
+            setText(currentNpcLabel, "Current NPC: " + trackedNpc);
+            
+            // One snapshot for every label, so they all agree with each other
+            NpcStats stats = plugin.getCurrentTrackedStats();
+            setText(totalKillsLabel, "Total Kills: " + stats.getKillCount());
+            
+            double totalKph = stats.getKillsPerHour();
+            setText(totalKphLabel, "Total KPH: " + (totalKph > 0 ? KPH_FORMAT.format(totalKph) : "0"));
             
-            NpcTrackingData data = plugin.getTrackingData(trackedNpc);
-            if (data != null)
+            boolean smoothed = config.rateMode() == NpcKphTrackerConfig.RateMode.SMOOTHED;
+            double recentKph = stats.getRecentKillsPerHour(config.rateMode());
+            setText(recentKphLabel, (smoothed ? "Pace KPH: " : "Recent KPH (" + stats.getRecentMinutes() + "m): ") +
+                (recentKph > 0 ? KPH_FORMAT.format(recentKph) : "0"));
+            
+            if (stats.getFirstKillTick() != NpcTrackingData.NO_KILL)
             {
-                totalKillsLabel.setText("Total Kills: " + data.getKillCount());
-                
-                double totalKph = data.getKillsPerHour();
-                totalKphLabel.setText("Total KPH: " + (totalKph > 0 ? KPH_FORMAT.format(totalKph) : "0"));
-                
-                double recentKph = data.getRecentKillsPerHour(config.recentTimeMinutes());
-                recentKphLabel.setText("Recent KPH (" + config.recentTimeMinutes() + "m): " + 
-                    (recentKph > 0 ? KPH_FORMAT.format(recentKph) : "0"));
-                
-                if (data.getFirstKill() != null)
-                {
-                    long sessionMinutes = java.time.temporal.ChronoUnit.MINUTES.between(
-                        data.getFirstKill(), 
-                        java.time.Instant.now()
-                    );
-                    sessionTimeLabel.setText("Session Time: " + formatTime(sessionMinutes));
-                }
-                else
-                {
-                    sessionTimeLabel.setText("Session Time: 0m");
-                }
-                
-                // Update slayer info
-                updateSlayerInfo(trackedNpc, data);
-                
-                // Update GP info
-                updateGpInfo(data);
+                long sessionMinutes = stats.getSessionTicks() / TickClock.TICKS_PER_MINUTE;
+                setText(sessionTimeLabel, "Session Time: " + formatTime(sessionMinutes));
             }
+            else
+            {
+                setText(sessionTimeLabel, "Session Time: 0m");
+            }
+            
+            updateKillTimeInfo(stats);
+            
+            // Update slayer info
+            updateSlayerInfo(trackedNpc);
+            
+            // Update GP info
+            updateGpInfo(stats);
         }
         else
         {
-            statusLabel.setText("Status: Not tracking");
+            setText(statusLabel, "Status: Not tracking");
             statusLabel.setForeground(Color.ORANGE);
-            currentNpcLabel.setText("Current NPC: None");
-            totalKillsLabel.setText("Total Kills: 0");
-            totalKphLabel.setText("Total KPH: 0");
-            recentKphLabel.setText("Recent KPH: 0");
-            sessionTimeLabel.setText("Session Time: 0m");
+            setText(currentNpcLabel, "Current NPC: None");
+            setText(totalKillsLabel, "Total Kills: 0");
+            setText(totalKphLabel, "Total KPH: 0");
+            setText(recentKphLabel, "Recent KPH: 0");
+            setText(sessionTimeLabel, "Session Time: 0m");
+            setText(killTimeLabel, "Kill Time: N/A");
+            setText(worstGapLabel, "Worst Gap: N/A");
             
             // Clear slayer info
-            slayerTaskLabel.setText("Slayer Task: None");
-            taskProgressLabel.setText("Progress: N/A");
-            timeEstimateLabel.setText("Est. Time: N/A");
+            setText(slayerTaskLabel, "Slayer Task: None");
+            setText(taskProgressLabel, "Progress: N/A");
+            setText(timeEstimateLabel, "Est. Time: N/A");
             
             // Clear GP info
-            totalGpLabel.setText("Total GP: 0");
-            avgGpPerKillLabel.setText("Avg GP/Kill: 0");
-            gpPerHourLabel.setText("GP/Hour: 0");
+            setText(totalGpLabel, "Total GP: 0");
+            setText(avgGpPerKillLabel, "Avg GP/Kill: 0");
+            setText(gpPerHourLabel, "GP/Hour: 0");
         }
     }
     
-    private void updateGpInfo(NpcTrackingData data)
+    private void updateKillTimeInfo(NpcStats stats)
     {
-        long totalGp = data.getTotalGpGained();
-        double avgGpPerKill = data.getAverageGpPerKill();
-        double gpPerHour = data.getGpPerHour();
-        
-        totalGpLabel.setText("Total GP: " + formatGp(totalGp));
-        avgGpPerKillLabel.setText("Avg GP/Kill: " + formatGp((long)avgGpPerKill));
-        gpPerHourLabel.setText("GP/Hour: " + formatGp((long)gpPerHour));
-    }
-            }
+        if (stats.getWorstGapTicks() == 0)
+        {
+            setText(killTimeLabel, "Kill Time: N/A");
+            setText(worstGapLabel, "Worst Gap: N/A");
+            return;
         }
-        else
+        
+        StringBuilder text = new StringBuilder("Kill Time:");
+        for (int i = 0; i < NpcStats.GAP_PERCENTILES.length; i++)
         {
-            statusLabel.setText("Status: Not tracking");
-            statusLabel.setForeground(Color.ORANGE);
-            currentNpcLabel.setText("Current NPC: None");
-            totalKillsLabel.setText("Total Kills: 0");
-            totalKphLabel.setText("Total KPH: 0");
-            recentKphLabel.setText("Recent KPH: 0");
-            sessionTimeLabel.setText("Session Time: 0m");
-            
-            // Clear slayer info
-            slayerTaskLabel.setText("Slayer Task: None");
-            taskProgressLabel.setText("Progress: N/A");
-            timeEstimateLabel.setText("Est. Time: N/A");
+            text.append(i == 0 ? " p" : " / p")
+                .append(Math.round(NpcStats.GAP_PERCENTILES[i] * 100))
+                .append(' ')
+                .append(formatTicks(stats.getGapTicks(i)));
         }
+        setText(killTimeLabel, text.toString());
+        setText(worstGapLabel, "Worst Gap: " + formatTicks(stats.getWorstGapTicks()));
     }
     
-    private void updateSlayerInfo(String trackedNpc, NpcTrackingData data)
+    private void updateGpInfo(NpcStats stats)
+    {
+        long totalGp = stats.getTotalGpGained();
+        double avgGpPerKill = stats.getAverageGpPerKill();
+        double gpPerHour = stats.getGpPerHour(config.rateMode());
+        boolean smoothed = config.rateMode() == NpcKphTrackerConfig.RateMode.SMOOTHED;
+        
+        setText(totalGpLabel, "Total GP: " + formatGp(totalGp));
+        setText(avgGpPerKillLabel, "Avg GP/Kill: " + formatGp((long)avgGpPerKill));
+        setText(gpPerHourLabel, (smoothed ? "Pace GP/Hour: " : "GP/Hour: ") + formatGp((long)gpPerHour));
+    }
+    
+    private void updateSlayerInfo(String trackedNpc)
     {
         SlayerTaskData slayerTask = plugin.getCurrentSlayerTask();
         
         if (slayerTask != null && slayerTask.getTaskName().equalsIgnoreCase(trackedNpc))
         {
-            slayerTaskLabel.setText("Slayer Task: " + slayerTask.getTaskName());
-            taskProgressLabel.setText(String.format("Progress: %d/%d (%.1f%%)", 
+            setText(slayerTaskLabel, "Slayer Task: " + slayerTask.getTaskName());
+            setText(taskProgressLabel, String.format("Progress: %d/%d (%.1f%%)", 
                 slayerTask.getCompleted(), 
                 slayerTask.getOriginalAmount(),
                 slayerTask.getProgressPercentage()));
                 
             String timeEstimate = plugin.getEstimatedTimeRemaining();
-            timeEstimateLabel.setText("Est. Time: " + (timeEstimate != null ? timeEstimate : "Calculating..."));
+            setText(timeEstimateLabel, "Est. Time: " + (timeEstimate != null ? timeEstimate : "Calculating..."));
         }
         else if (slayerTask != null)
         {
-            slayerTaskLabel.setText("Slayer Task: " + slayerTask.getTaskName() + " (not tracking)");
-            taskProgressLabel.setText(String.format("Progress: %d/%d", 
+            setText(slayerTaskLabel, "Slayer Task: " + slayerTask.getTaskName() + " (not tracking)");
+            setText(taskProgressLabel, String.format("Progress: %d/%d", 
                 slayerTask.getCompleted(), 
                 slayerTask.getOriginalAmount()));
-            timeEstimateLabel.setText("Est. Time: N/A");
+            setText(timeEstimateLabel, "Est. Time: N/A");
         }
         else
         {
-            slayerTaskLabel.setText("Slayer Task: None");
-            taskProgressLabel.setText("Progress: N/A");
-            timeEstimateLabel.setText("Est. Time: N/A");
-            }
+            setText(slayerTaskLabel, "Slayer Task: None");
+            setText(taskProgressLabel, "Progress: N/A");
+            setText(timeEstimateLabel, "Est. Time: N/A");
         }
-        else
+    }
+    
+    private void updatePriceCacheInfo()
+    {
+        ItemPriceCache priceCache = plugin.getPriceCache();
+        if (priceCache == null)
         {
-            statusLabel.setText("Status: Not tracking");
-            statusLabel.setForeground(Color.ORANGE);
-            currentNpcLabel.setText("Current NPC: None");
-            totalKillsLabel.setText("Total Kills: 0");
-            totalKphLabel.setText("Total KPH: 0");
-            recentKphLabel.setText("Recent KPH: 0");
-            sessionTimeLabel.setText("Session Time: 0m");
+            return;
+        }
+
+        setText(priceCacheLabel, String.format("Price Cache: %d hits / %d misses (%.0f%%)",
+            priceCache.getHits(),
+            priceCache.getMisses(),
+            priceCache.getHitRate() * 100));
+    }
+    
+    private void updateAllocationInfo()
+    {
+        long[] averageBytes = plugin.getTimings().getAverageAllocatedBytes();
+        if (averageBytes == null)
+        {
+            allocationLabel.setVisible(false);
+            return;
+        }
+
+        long total = HandlerTimings.totalBytes(averageBytes);
+        boolean overBudget = total > config.allocationBudget() * 1024L;
+        StringBuilder text = new StringBuilder("<html>Allocated per tick (1m avg): ")
+            .append(formatBytes(total));
+        for (HandlerTimings.Handler handler : HandlerTimings.Handler.values())
+        {
+            text.append("<br>&nbsp;&nbsp;")
+                .append(handler.getLabel())
+                .append(": ")
+                .append(formatBytes(averageBytes[handler.ordinal()]));
+        }
+        text.append("</html>");
+
+        setText(allocationLabel, text.toString());
+        allocationLabel.setForeground(overBudget ? Color.RED : Color.LIGHT_GRAY);
+        allocationLabel.setVisible(true);
+    }
+    
+    private void exportHistory()
+    {
+        FileNameExtensionFilter csv = new FileNameExtensionFilter("CSV (*.csv)", HistoryExport.Format.CSV.getExtension());
+        FileNameExtensionFilter columnar = new FileNameExtensionFilter("Columnar binary (*.bin)", HistoryExport.Format.COLUMNAR.getExtension());
+        
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export Kill History");
+        chooser.setAcceptAllFileFilterUsed(false);
+        chooser.addChoosableFileFilter(csv);
+        chooser.addChoosableFileFilter(columnar);
+        chooser.setFileFilter(csv);
+        chooser.setSelectedFile(new File("npc-kph-history.csv"));
+        
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+        {
+            return;
+        }
+        
+        HistoryExport.Format format = chooser.getFileFilter() == columnar ? HistoryExport.Format.COLUMNAR : HistoryExport.Format.CSV;
+        File file = chooser.getSelectedFile();
+        String extension = "." + format.getExtension();
+        if (!file.getName().toLowerCase().endsWith(extension))
+        {
+            file = new File(file.getParentFile(), file.getName() + extension);
+        }
+        
+        exportButton.setEnabled(false);
+        exportStatusLabel.setText("Exporting...");
+        plugin.exportHistory(file, format, message ->
+        {
+            exportButton.setEnabled(true);
+            exportStatusLabel.setText(message);
+        });
+    }
+    
+    /**
+     * Only touches the label when its text actually changes.
+     */
+    private static void setText(JLabel label, String text)
+    {
+        if (!text.equals(label.getText()))
+        {
+            label.setText(text);
         }
     }
     
@@ -363,6 +508,39 @@ public class NpcKphTrackerPanel extends PluginPanel
         }
     }
     
+    private static String formatTicks(int ticks)
+    {
+        long seconds = ticks * TickClock.TICK_MILLIS / 1000;
+        if (seconds < 60)
+        {
+            return seconds + "s";
+        }
+        else if (seconds < 3600)
+        {
+            return seconds / 60 + "m " + seconds % 60 + "s";
+        }
+        else
+        {
+            return seconds / 3600 + "h " + seconds % 3600 / 60 + "m";
+        }
+    }
+    
+    private static String formatBytes(long bytes)
+    {
+        if (bytes >= 1024 * 1024)
+        {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+        }
+        else if (bytes >= 1024)
+        {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        else
+        {
+            return bytes + " B";
+        }
+    }
+
     private String formatGp(long gp)
     {
         if (gp >= 1000000)
@@ -384,17 +562,20 @@ public class NpcKphTrackerPanel extends PluginPanel
         @Override
         public void actionPerformed(ActionEvent e)
         {
+            if (syncingSelection)
+            {
+                return;
+            }
+
             String selected = (String) npcSelector.getSelectedItem();
-            if (selected != null && !selected.equals("-- Select NPC --"))
+            if (selected != null && !selected.equals(NpcSelectorModel.PLACEHOLDER))
             {
                 plugin.setTrackedNpc(selected);
-                updateLabels();
             }
-            else if (selected != null && selected.equals("-- Select NPC --"))
+            else if (selected != null)
             {
                 plugin.setTrackedNpc(null);
-                updateLabels();
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package com.npckphtracker;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Schedules panel refreshes from the client thread. Any number of changes
+ * marked between game ticks collapse into a single {@code invokeLater}, no
+ * refresh is queued while a previous one is still waiting on the EDT, and
+ * refreshes are at least {@link #MIN_INTERVAL_TICKS} apart. Without changes
+ * the panel still refreshes every {@link #IDLE_INTERVAL_TICKS} so time-based
+ * values such as session length and recent KPH keep moving. While the panel
+ * is hidden only changes refresh it, at most every
+ * {@link #HIDDEN_INTERVAL_TICKS}, so the NPC selector does not fall far
+ * behind; the panel refreshes fully again when it is shown.
+ */
+class PanelUpdatePublisher
+{
+    static final int MIN_INTERVAL_TICKS = 1;
+    static final int IDLE_INTERVAL_TICKS = 5;
+    static final int HIDDEN_INTERVAL_TICKS = TickClock.TICKS_PER_MINUTE;
+
+    private final Runnable refresh;
+    private final AtomicBoolean queued = new AtomicBoolean();
+    private final Runnable runRefresh;
+    private boolean dirty = true;
+    private int lastPublishTick = Integer.MIN_VALUE / 2;
+
+    PanelUpdatePublisher(Runnable refresh)
+    {
+        this.refresh = refresh;
+        this.runRefresh = this::runRefresh;
+    }
+
+    /**
+     * Notes that something shown in the panel has changed.
+     */
+    void markDirty()
+    {
+        dirty = true;
+    }
+
+    /**
+     * Called once per game tick on the client thread.
+     */
+    void onTick(int tick, boolean visible)
+    {
+        int sinceLast = tick - lastPublishTick;
+        if (!visible)
+        {
+            if (!dirty || sinceLast < HIDDEN_INTERVAL_TICKS)
+            {
+                return;
+            }
+        }
+        else if (sinceLast < MIN_INTERVAL_TICKS || (!dirty && sinceLast < IDLE_INTERVAL_TICKS))
+        {
+            return;
+        }
+
+        if (queued.compareAndSet(false, true))
+        {
+            dirty = false;
+            lastPublishTick = tick;
+            SwingUtilities.invokeLater(runRefresh);
+        }
+    }
+
+    private void runRefresh()
+    {
+        queued.set(false);
+        refresh.run();
+    }
+}
@@ -0,0 +1,300 @@
+package com.npckphtracker;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Bounded item id to GP price cache in front of {@code ItemManager}. Entries
+ * live in primitive arrays indexed through an open-addressing table and are
+ * chained in least-recently-used order, so a lookup never boxes and a full
+ * cache evicts the entry that has gone longest without being read.
+ *
+ * Prices older than the refresh interval keep being served while they wait in
+ * a refresh queue, which {@link #refreshStale(int)} drains a few entries at a
+ * time outside of the event handlers that read them.
+ */
+class ItemPriceCache
+{
+    static final int DEFAULT_CAPACITY = 1024;
+    // ItemManager reloads its price table every 30 minutes
+    static final int REFRESH_TICKS = 30 * TickClock.TICKS_PER_MINUTE;
+
+    private static final int NONE = -1;
+
+    private final IntUnaryOperator priceSource;
+    private final TickClock clock;
+    private final int capacity;
+
+    // Open-addressing table of entry index + 1, 0 for an empty bucket
+    private final int[] table;
+    private final int mask;
+
+    private final int[] itemIds;
+    private final int[] prices;
+    private final int[] loadedAt;
+    private final int[] newer;
+    private final int[] older;
+    private final boolean[] refreshQueued;
+    private int newest = NONE;
+    private int oldest = NONE;
+    private int size;
+
+    private final int[] refreshQueue;
+    private int refreshHead;
+    private int refreshCount;
+
+    // Only the client thread writes these; volatile so the panel reads current values
+    private volatile long hits;
+    private volatile long misses;
+    private volatile long evictions;
+    private volatile long refreshes;
+
+    ItemPriceCache(IntUnaryOperator priceSource, TickClock clock)
+    {
+        this(priceSource, clock, DEFAULT_CAPACITY);
+    }
+
+    ItemPriceCache(IntUnaryOperator priceSource, TickClock clock, int capacity)
+    {
+        this.priceSource = priceSource;
+        this.clock = clock;
+        this.capacity = capacity;
+
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        table = new int[tableSize];
+        mask = tableSize - 1;
+
+        itemIds = new int[capacity];
+        prices = new int[capacity];
+        loadedAt = new int[capacity];
+        newer = new int[capacity];
+        older = new int[capacity];
+        refreshQueued = new boolean[capacity];
+        refreshQueue = new int[capacity];
+    }
+
+    /**
+     * Price of a single item, loading it from the price source on a miss.
+     */
+    int getPrice(int itemId)
+    {
+        int entry = find(itemId);
+        if (entry != NONE)
+        {
+            hits++;
+            touch(entry);
+            if (!refreshQueued[entry] && clock.now() - loadedAt[entry] >= REFRESH_TICKS)
+            {
+                queueRefresh(entry);
+            }
+            return prices[entry];
+        }
+
+        misses++;
+        int price = priceSource.applyAsInt(itemId);
+        insert(itemId, price);
+        return price;
+    }
+
+    /**
+     * Reloads up to {@code limit} stale prices. Must run on a thread the
+     * price source can be called from.
+     */
+    void refreshStale(int limit)
+    {
+        int now = clock.now();
+        while (refreshCount > 0 && limit-- > 0)
+        {
+            int entry = refreshQueue[refreshHead];
+            refreshHead = (refreshHead + 1) % capacity;
+            refreshCount--;
+
+            if (!refreshQueued[entry])
+            {
+                // Evicted while waiting
+                continue;
+            }
+
+            refreshQueued[entry] = false;
+            prices[entry] = priceSource.applyAsInt(itemIds[entry]);
+            loadedAt[entry] = now;
+            refreshes++;
+        }
+    }
+
+    void clear()
+    {
+        Arrays.fill(table, 0);
+        Arrays.fill(refreshQueued, false);
+        newest = NONE;
+        oldest = NONE;
+        size = 0;
+        refreshHead = 0;
+        refreshCount = 0;
+    }
+
+    long getHits()
+    {
+        return hits;
+    }
+
+    long getMisses()
+    {
+        return misses;
+    }
+
+    long getEvictions()
+    {
+        return evictions;
+    }
+
+    long getRefreshes()
+    {
+        return refreshes;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    double getHitRate()
+    {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    private int find(int itemId)
+    {
+        for (int bucket = hash(itemId); ; bucket = (bucket + 1) & mask)
+        {
+            int slot = table[bucket];
+            if (slot == 0)
+            {
+                return NONE;
+            }
+            if (itemIds[slot - 1] == itemId)
+            {
+                return slot - 1;
+            }
+        }
+    }
+
+    private void insert(int itemId, int price)
+    {
+        int entry;
+        if (size < capacity)
+        {
+            entry = size++;
+        }
+        else
+        {
+            entry = oldest;
+            unlink(entry);
+            removeFromTable(itemIds[entry]);
+            refreshQueued[entry] = false;
+            evictions++;
+        }
+
+        itemIds[entry] = itemId;
+        prices[entry] = price;
+        loadedAt[entry] = clock.now();
+        linkNewest(entry);
+
+        int bucket = hash(itemId);
+        while (table[bucket] != 0)
+        {
+            bucket = (bucket + 1) & mask;
+        }
+        table[bucket] = entry + 1;
+    }
+
+    /**
+     * Linear-probing delete that shifts later members of the probe run back so
+     * lookups never need tombstones.
+     */
+    private void removeFromTable(int itemId)
+    {
+        int bucket = hash(itemId);
+        while (itemIds[table[bucket] - 1] != itemId)
+        {
+            bucket = (bucket + 1) & mask;
+        }
+
+        int hole = bucket;
+        for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask)
+        {
+            int home = hash(itemIds[table[next] - 1]);
+            // Move the entry back if its home bucket is not between the hole and its position
+            if (((next - home) & mask) >= ((next - hole) & mask))
+            {
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void queueRefresh(int entry)
+    {
+        if (refreshCount == capacity)
+        {
+            // Slots left by evicted entries have not drained yet; try again on the next read
+            return;
+        }
+
+        refreshQueued[entry] = true;
+        refreshQueue[(refreshHead + refreshCount) % capacity] = entry;
+        refreshCount++;
+    }
+
+    private void touch(int entry)
+    {
+        if (entry != newest)
+        {
+            unlink(entry);
+            linkNewest(entry);
+        }
+    }
+
+    private void linkNewest(int entry)
+    {
+        older[entry] = newest;
+        newer[entry] = NONE;
+        if (newest != NONE)
+        {
+            newer[newest] = entry;
+        }
+        newest = entry;
+        if (oldest == NONE)
+        {
+            oldest = entry;
+        }
+    }
+
+    private void unlink(int entry)
+    {
+        if (older[entry] != NONE)
+        {
+            newer[older[entry]] = newer[entry];
+        }
+        else
+        {
+            oldest = newer[entry];
+        }
+
+        if (newer[entry] != NONE)
+        {
+            older[newer[entry]] = older[entry];
+        }
+        else
+        {
+            newest = older[entry];
+        }
+    }
+
+    private int hash(int itemId)
+    {
+        return (itemId * 0x9E3779B9) >>> 16 & mask;
+    }
+}
@@ -0,0 +1,86 @@
+package com.npckphtracker;
+
+/**
+ * Exponentially weighted rate of kills or GP in constant memory. Every
+ * amount added goes into a sum that halves every half-life, so for a steady
+ * rate the sum settles at the rate times the half-life over ln 2, and the
+ * estimate follows a change of pace smoothly without keeping any history.
+ * Until a few half-lives have been observed the estimate is scaled up for the
+ * shorter time seen, so it does not start from zero.
+ *
+ * The half-life is passed in on each call so a config change applies to the
+ * existing sum. Client thread only.
+ */
+class RateEstimator
+{
+    private static final double LN2 = Math.log(2);
+    private static final int NOT_STARTED = Integer.MIN_VALUE;
+
+    private double sum;
+    // Tick the sum was last decayed to
+    private int updatedTick = NOT_STARTED;
+    private int startTick = NOT_STARTED;
+
+    boolean isStarted()
+    {
+        return startTick != NOT_STARTED;
+    }
+
+    /**
+     * Starts observing at the given tick without adding anything, as for an
+     * NPC's first kill, which only marks when the pace starts.
+     */
+    void start(int tick)
+    {
+        if (!isStarted())
+        {
+            startTick = tick;
+            updatedTick = tick;
+        }
+    }
+
+    void add(int tick, double amount, int halfLifeTicks)
+    {
+        start(tick);
+        if (tick > updatedTick)
+        {
+            sum *= decay(tick - updatedTick, halfLifeTicks);
+            updatedTick = tick;
+            sum += amount;
+        }
+        else
+        {
+            // Arrived late; weigh it as it would have been at its own tick
+            sum += amount * decay(updatedTick - tick, halfLifeTicks);
+        }
+    }
+
+    /**
+     * Smoothed rate per hour as of {@code now}; 0 before anything was added.
+     */
+    double getRatePerHour(int now, int halfLifeTicks)
+    {
+        if (!isStarted() || sum == 0)
+        {
+            return 0.0;
+        }
+
+        double meanLifeTicks = halfLifeTicks / LN2;
+        int observedTicks = Math.max(1, now - startTick);
+        double coverage = 1 - Math.exp(-observedTicks / meanLifeTicks);
+        double decayed = sum * decay(Math.max(0, now - updatedTick), halfLifeTicks);
+        return decayed / (meanLifeTicks * coverage) * TickClock.TICKS_PER_HOUR;
+    }
+
+    void reset()
+    {
+        sum = 0;
+        updatedTick = NOT_STARTED;
+        startTick = NOT_STARTED;
+    }
+
+    private static double decay(int ticks, int halfLifeTicks)
+    {
+        return Math.exp(-LN2 * ticks / halfLifeTicks);
+    }
+}
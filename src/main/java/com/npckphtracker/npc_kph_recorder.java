@@ -0,0 +1,414 @@
+package com.npckphtracker;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Item;
+import net.runelite.client.game.ItemStack;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the game events the tracker reacts to, so a session can be replayed
+ * later without logging in. A recording holds the tracking settings, the
+ * slayer varps and inventory at startup, and then every game tick, named NPC
+ * death, inventory change, loot drop, slayer varp change, settings change and
+ * item price lookup in the order the plugin saw them.
+ *
+ * Records are a type byte followed by big-endian fields. NPC names are written
+ * once and referred to by index afterwards. Everything is written on the
+ * client thread through a buffer; a failed write stops the recording.
+ */
+@Slf4j
+class SessionRecorder
+{
+    interface Visitor
+    {
+        /**
+         * A setting, as it was at startup or, after {@link #onStarted}, as
+         * it was changed to while running.
+         */
+        void onConfig(String key, String value);
+
+        /**
+         * End of the startup state. Events after this were seen while running.
+         */
+        void onStarted(boolean loggedIn);
+
+        void onGameTick(int clientTick, int elapsedMillis);
+
+        void onNpcDeath(int npcId, String name, int tile, boolean npcInteracting, boolean playerInteracting);
+
+        void onInventory(int[] itemIds, int[] quantities);
+
+        void onLoot(int tile, int[] itemIds, int[] quantities);
+
+        void onVarp(int varpId, int value);
+
+        void onPrice(int itemId, int price);
+    }
+
+    private static final int MAGIC = 0x4E4B5052;
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final byte CONFIG = 1;
+    private static final byte STARTED = 2;
+    private static final byte GAME_TICK = 3;
+    private static final byte NAME = 4;
+    private static final byte NPC_DEATH = 5;
+    private static final byte INVENTORY = 6;
+    private static final byte LOOT = 7;
+    private static final byte VARP = 8;
+    private static final byte PRICE = 9;
+
+    private final File file;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Integer> nameIndexes = new HashMap<>();
+    private DataOutputStream out;
+
+    private SessionRecorder(File file, DataOutputStream out)
+    {
+        this.file = file;
+        this.out = out;
+    }
+
+    /**
+     * Starts a new recording named after the current time in the given directory.
+     */
+    static SessionRecorder create(File directory) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        File file = new File(directory, LocalDateTime.now().format(FILE_NAME_FORMAT) + ".rec");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_BYTES));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        return new SessionRecorder(file, out);
+    }
+
+    File getFile()
+    {
+        return file;
+    }
+
+    synchronized void recordConfig(String key, Object value)
+    {
+        if (out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            out.writeByte(CONFIG);
+            out.writeUTF(key);
+            out.writeUTF(String.valueOf(value));
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    synchronized void recordStarted(boolean loggedIn)
+    {
+        if (out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            out.writeByte(STARTED);
+            out.writeBoolean(loggedIn);
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    synchronized void recordGameTick(int clientTick)
+    {
+        if (out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            out.writeByte(GAME_TICK);
+            out.writeInt(clientTick);
+            out.writeInt((int) ((System.nanoTime() - startNanos) / 1_000_000));
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    synchronized void recordNpcDeath(int npcId, String name, int tile, boolean npcInteracting, boolean playerInteracting)
+    {
+        if (out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            int nameIndex = nameIndex(name);
+            out.writeByte(NPC_DEATH);
+            out.writeInt(npcId);
+            out.writeInt(nameIndex);
+            out.writeInt(tile);
+            out.writeByte((npcInteracting ? 1 : 0) | (playerInteracting ? 2 : 0));
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    synchronized void recordInventory(Item[] items)
+    {
+        if (out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            out.writeByte(INVENTORY);
+            out.writeShort(items.length);
+            for (Item item : items)
+            {
+                out.writeInt(item.getId());
+                out.writeInt(item.getQuantity());
+            }
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    synchronized void recordLoot(int tile, Collection<ItemStack> items)
+    {
+        if (out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            out.writeByte(LOOT);
+            out.writeInt(tile);
+            out.writeShort(items.size());
+            for (ItemStack item : items)
+            {
+                out.writeInt(item.getId());
+                out.writeInt(item.getQuantity());
+            }
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    synchronized void recordVarp(int varpId, int value)
+    {
+        if (out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            out.writeByte(VARP);
+            out.writeInt(varpId);
+            out.writeInt(value);
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    synchronized void recordPrice(int itemId, int price)
+    {
+        if (out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            out.writeByte(PRICE);
+            out.writeInt(itemId);
+            out.writeInt(price);
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    synchronized void close()
+    {
+        if (out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            out.close();
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to finish session recording {}", file, e);
+        }
+        out = null;
+    }
+
+    private int nameIndex(String name) throws IOException
+    {
+        Integer index = nameIndexes.get(name);
+        if (index != null)
+        {
+            return index;
+        }
+
+        int added = nameIndexes.size();
+        nameIndexes.put(name, added);
+        out.writeByte(NAME);
+        out.writeUTF(name);
+        return added;
+    }
+
+    private void fail(IOException e)
+    {
+        log.warn("Unable to write session recording {}, recording stopped", file, e);
+        try
+        {
+            out.close();
+        }
+        catch (IOException ignored)
+        {
+            // Already failing
+        }
+        out = null;
+    }
+
+    /**
+     * Reads a recording back, calling the visitor for each record in order.
+     * A recording cut off part way through a record, as when the client was
+     * killed, ends at the last complete record.
+     */
+    static void read(File file, Visitor visitor) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_BYTES)))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException(file + " is not a session recording");
+            }
+            in.readLong();
+
+            List<String> names = new ArrayList<>();
+            while (true)
+            {
+                int type = in.read();
+                if (type < 0)
+                {
+                    return;
+                }
+
+                switch (type)
+                {
+                    case CONFIG:
+                        visitor.onConfig(in.readUTF(), in.readUTF());
+                        break;
+                    case STARTED:
+                        visitor.onStarted(in.readBoolean());
+                        break;
+                    case GAME_TICK:
+                        visitor.onGameTick(in.readInt(), in.readInt());
+                        break;
+                    case NAME:
+                        names.add(in.readUTF());
+                        break;
+                    case NPC_DEATH:
+                    {
+                        int npcId = in.readInt();
+                        String name = names.get(in.readInt());
+                        int tile = in.readInt();
+                        int interacting = in.readByte();
+                        visitor.onNpcDeath(npcId, name, tile, (interacting & 1) != 0, (interacting & 2) != 0);
+                        break;
+                    }
+                    case INVENTORY:
+                    {
+                        int count = in.readUnsignedShort();
+                        int[] itemIds = new int[count];
+                        int[] quantities = new int[count];
+                        readItems(in, itemIds, quantities);
+                        visitor.onInventory(itemIds, quantities);
+                        break;
+                    }
+                    case LOOT:
+                    {
+                        int tile = in.readInt();
+                        int count = in.readUnsignedShort();
+                        int[] itemIds = new int[count];
+                        int[] quantities = new int[count];
+                        readItems(in, itemIds, quantities);
+                        visitor.onLoot(tile, itemIds, quantities);
+                        break;
+                    }
+                    case VARP:
+                        visitor.onVarp(in.readInt(), in.readInt());
+                        break;
+                    case PRICE:
+                        visitor.onPrice(in.readInt(), in.readInt());
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type + " in " + file);
+                }
+            }
+        }
+        catch (EOFException e)
+        {
+            log.debug("Session recording {} ends part way through a record", file);
+        }
+    }
+
+    private static void readItems(DataInputStream in, int[] itemIds, int[] quantities) throws IOException
+    {
+        for (int i = 0; i < itemIds.length; i++)
+        {
+            itemIds[i] = in.readInt();
+            quantities[i] = in.readInt();
+        }
+    }
+}
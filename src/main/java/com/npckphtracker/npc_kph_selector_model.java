@@ -0,0 +1,100 @@
+package com.npckphtracker;
+
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Combo box model for the panel's NPC selector. Entries are kept in tracking
+ * key order behind a fixed placeholder, and {@link #sync(NpcTrackingView)}
+ * applies only the insertions and removals since the last sync, so the combo
+ * box is never emptied and refilled and does not fire spurious selection
+ * events while the list changes.
+ */
+class NpcSelectorModel extends AbstractListModel<String> implements ComboBoxModel<String>
+{
+    static final String PLACEHOLDER = "-- Select NPC --";
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> keys = new ArrayList<>();
+    private Object selected = PLACEHOLDER;
+
+    /**
+     * Brings the entries in line with the tracking view. Must run on the EDT.
+     */
+    void sync(NpcTrackingView view)
+    {
+        int index = 0;
+        for (int key = 0; key < view.size(); key++)
+        {
+            boolean tracked = view.getStats(key) != null;
+            boolean listed = index < keys.size() && keys.get(index) == key;
+
+            if (tracked && !listed)
+            {
+                keys.add(index, key);
+                names.add(index, view.getName(key));
+                fireIntervalAdded(this, index + 1, index + 1);
+            }
+            else if (!tracked && listed)
+            {
+                removeAt(index);
+                continue;
+            }
+
+            if (tracked)
+            {
+                index++;
+            }
+        }
+
+        // Keys past the end of the view only appear if the store was replaced
+        while (index < keys.size())
+        {
+            removeAt(index);
+        }
+    }
+
+    @Override
+    public void setSelectedItem(Object item)
+    {
+        Object newSelection = item != null ? item : PLACEHOLDER;
+        if (!Objects.equals(selected, newSelection))
+        {
+            selected = newSelection;
+            fireContentsChanged(this, -1, -1);
+        }
+    }
+
+    @Override
+    public Object getSelectedItem()
+    {
+        return selected;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return names.size() + 1;
+    }
+
+    @Override
+    public String getElementAt(int index)
+    {
+        return index == 0 ? PLACEHOLDER : names.get(index - 1);
+    }
+
+    private void removeAt(int index)
+    {
+        String name = names.remove(index);
+        keys.remove(index);
+        fireIntervalRemoved(this, index + 1, index + 1);
+
+        if (name.equals(selected))
+        {
+            setSelectedItem(PLACEHOLDER);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.npckphtracker;
+
+import java.util.Locale;
+
+/**
+ * Decides whether an NPC counts towards the current slayer task. The task's
+ * accepted names are lowercased once when the task is assigned, and each NPC
+ * composition id's result is remembered, so repeat kills of the same NPC type
+ * are a single primitive map lookup. NPC ids listed for the creature in the
+ * {@link SlayerCreatureTable} match without looking at the name at all.
+ */
+class SlayerTaskMatcher
+{
+    private static final int UNKNOWN = -1;
+    private static final int NO_MATCH = 0;
+    private static final int MATCH = 1;
+
+    private final SlayerCreatureTable table;
+    private final int creatureId;
+    private final String[] aliases;
+    private final IntIntMap resultsByNpcId = new IntIntMap(16, UNKNOWN);
+
+    SlayerTaskMatcher(SlayerCreatureTable table, int creatureId)
+    {
+        this.table = table;
+        this.creatureId = creatureId;
+
+        String taskName = table.getTaskName(creatureId);
+        String[] alternatives = table.getNpcNames(creatureId);
+        aliases = new String[alternatives.length + 1];
+        aliases[0] = taskName.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < alternatives.length; i++)
+        {
+            aliases[i + 1] = alternatives[i].toLowerCase(Locale.ROOT);
+        }
+    }
+
+    boolean matches(int npcId, String npcName)
+    {
+        int result = resultsByNpcId.get(npcId);
+        if (result == UNKNOWN)
+        {
+            boolean matched = table.getCreatureForNpc(npcId) == creatureId || matchesName(npcName);
+            result = matched ? MATCH : NO_MATCH;
+            resultsByNpcId.put(npcId, result);
+        }
+        return result == MATCH;
+    }
+
+    /**
+     * Name match used the first time an NPC id is seen. Names only match as
+     * whole words, optionally plural, so "ent" does not match "Serpent" nor
+     * "rat" "Pirate". The task name matches in either direction ("Drake" for
+     * "drakes", "Hill giant" for "hill giants"); alternative names must
+     * appear in the NPC's name.
+     */
+    boolean matchesName(String npcName)
+    {
+        if (npcName == null)
+        {
+            return false;
+        }
+
+        String npcLower = npcName.toLowerCase(Locale.ROOT);
+        if (containsWord(npcLower, aliases[0]) || containsWord(aliases[0], npcLower))
+        {
+            return true;
+        }
+
+        for (int i = 1; i < aliases.length; i++)
+        {
+            if (containsWord(npcLower, aliases[i]))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether {@code word} appears in {@code text} with no letters either side
+     * of it, other than a plural "s" after it.
+     */
+    static boolean containsWord(String text, String word)
+    {
+        if (word.isEmpty())
+        {
+            return false;
+        }
+
+        for (int start = text.indexOf(word); start >= 0; start = text.indexOf(word, start + 1))
+        {
+            int end = start + word.length();
+            if (end < text.length() && text.charAt(end) == 's')
+            {
+                end++;
+            }
+
+            if ((start == 0 || !Character.isLetter(text.charAt(start - 1)))
+                && (end == text.length() || !Character.isLetter(text.charAt(end))))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
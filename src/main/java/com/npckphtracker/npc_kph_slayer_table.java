@@ -0,0 +1,204 @@
+package com.npckphtracker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Slayer task creatures read from the bundled {@code slayer_creatures.txt}.
+ * Task names and accepted NPC names are held in arrays indexed directly by the
+ * slayer task creature id, and accepted NPC ids map back to their creature id,
+ * so every lookup is O(1). An NPC id may only be listed for one creature.
+ * Creature ids missing from the table get a distinct placeholder name instead
+ * of sharing one "unknown" task.
+ */
+@Slf4j
+class SlayerCreatureTable
+{
+    static final String RESOURCE = "slayer_creatures.txt";
+
+    private static final String[] NO_NAMES = new String[0];
+    private static final int[] NO_IDS = new int[0];
+
+    private final int version;
+    private final String[] taskNames;
+    private final String[][] npcNames;
+    private final int[][] npcIds;
+    private final IntIntMap creatureByNpcId;
+
+    private SlayerCreatureTable(int version, String[] taskNames, String[][] npcNames, int[][] npcIds, IntIntMap creatureByNpcId)
+    {
+        this.version = version;
+        this.taskNames = taskNames;
+        this.npcNames = npcNames;
+        this.npcIds = npcIds;
+        this.creatureByNpcId = creatureByNpcId;
+    }
+
+    /**
+     * Loads the bundled table, falling back to an empty table if it cannot be read.
+     */
+    static SlayerCreatureTable load()
+    {
+        try (InputStream in = SlayerCreatureTable.class.getResourceAsStream(RESOURCE))
+        {
+            if (in == null)
+            {
+                throw new IOException("missing resource " + RESOURCE);
+            }
+
+            SlayerCreatureTable table = parse(in);
+            log.debug("Loaded slayer creature table v{} with {} creatures", table.version, table.taskNames.length);
+            return table;
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            log.warn("Unable to load slayer creature table", e);
+            return new SlayerCreatureTable(0, NO_NAMES, new String[0][], new int[0][], new IntIntMap(0, -1));
+        }
+    }
+
+    static SlayerCreatureTable parse(InputStream in) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        int version = 0;
+        String[] taskNames = new String[128];
+        String[][] npcNames = new String[128][];
+        int[][] npcIds = new int[128][];
+        IntIntMap creatureByNpcId = new IntIntMap(64, -1);
+        int maxId = 0;
+
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null)
+        {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+            {
+                continue;
+            }
+
+            if (line.startsWith("version="))
+            {
+                version = Integer.parseInt(line.substring("version=".length()).trim());
+                continue;
+            }
+
+            String[] columns = line.split("\\|", -1);
+            if (columns.length != 4)
+            {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected 4 columns, found " + columns.length);
+            }
+
+            int creatureId = Integer.parseInt(columns[0].trim());
+            if (creatureId <= 0)
+            {
+                throw new IllegalArgumentException("Line " + lineNumber + ": invalid creature id " + creatureId);
+            }
+
+            if (creatureId >= taskNames.length)
+            {
+                int length = Math.max(creatureId + 1, taskNames.length * 2);
+                taskNames = Arrays.copyOf(taskNames, length);
+                npcNames = Arrays.copyOf(npcNames, length);
+                npcIds = Arrays.copyOf(npcIds, length);
+            }
+
+            taskNames[creatureId] = columns[1].trim();
+            npcNames[creatureId] = splitNames(columns[2]);
+            npcIds[creatureId] = splitIds(columns[3]);
+            for (int npcId : npcIds[creatureId])
+            {
+                int listed = creatureByNpcId.get(npcId);
+                if (listed != -1)
+                {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": NPC id " + npcId
+                        + " is already listed for creature " + listed);
+                }
+                creatureByNpcId.put(npcId, creatureId);
+            }
+            maxId = Math.max(maxId, creatureId);
+        }
+
+        return new SlayerCreatureTable(version,
+            Arrays.copyOf(taskNames, maxId + 1),
+            Arrays.copyOf(npcNames, maxId + 1),
+            Arrays.copyOf(npcIds, maxId + 1),
+            creatureByNpcId);
+    }
+
+    int getVersion()
+    {
+        return version;
+    }
+
+    boolean contains(int creatureId)
+    {
+        return creatureId > 0 && creatureId < taskNames.length && taskNames[creatureId] != null;
+    }
+
+    /**
+     * Task name for a creature id. Ids missing from the table are named after
+     * the id so that different unknown tasks are still told apart.
+     */
+    String getTaskName(int creatureId)
+    {
+        return contains(creatureId) ? taskNames[creatureId] : "Slayer task " + creatureId;
+    }
+
+    String[] getNpcNames(int creatureId)
+    {
+        return contains(creatureId) ? npcNames[creatureId] : NO_NAMES;
+    }
+
+    int[] getNpcIds(int creatureId)
+    {
+        return contains(creatureId) ? npcIds[creatureId] : NO_IDS;
+    }
+
+    /**
+     * Creature id that an NPC composition id always counts towards, or -1.
+     */
+    int getCreatureForNpc(int npcId)
+    {
+        return creatureByNpcId.get(npcId);
+    }
+
+    private static String[] splitNames(String column)
+    {
+        if (column.trim().isEmpty())
+        {
+            return NO_NAMES;
+        }
+
+        String[] names = column.split(",");
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = names[i].trim();
+        }
+        return names;
+    }
+
+    private static int[] splitIds(String column)
+    {
+        if (column.trim().isEmpty())
+        {
+            return NO_IDS;
+        }
+
+        String[] parts = column.split(",");
+        int[] ids = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+        {
+            ids[i] = Integer.parseInt(parts[i].trim());
+        }
+        return ids;
+    }
+}
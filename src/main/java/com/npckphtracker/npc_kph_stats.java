@@ -0,0 +1,199 @@
+package com.npckphtracker;
+
+/**
+ * Immutable view of one NPC's tracking data at a given tick. The client thread
+ * owns {@link NpcTrackingData} and publishes a new snapshot through a volatile
+ * reference whenever it changes, so the overlay and the Swing panel read a
+ * consistent set of values without locking and never see a kill counted
+ * without its timestamp or totals halfway through an expiry.
+ */
+final class NpcStats
+{
+    static final int[] BREAKDOWN_WINDOWS = {5, 15, 60};
+    static final double[] GAP_PERCENTILES = {0.5, 0.9, 0.99};
+
+    static final NpcStats EMPTY = new NpcStats(0, 0, NpcTrackingData.NO_KILL, NpcTrackingData.NO_KILL,
+        0, 0, NpcTrackingData.NO_KILL, 0, 0, 0, new int[BREAKDOWN_WINDOWS.length], 0, 0, new int[GAP_PERCENTILES.length], 0);
+
+    private final int killCount;
+    private final long totalGpGained;
+    private final int firstKillTick;
+    private final int lastKillTick;
+    // Kills and GP since the client started, which the session rates are taken over
+    private final int sessionKillCount;
+    private final long sessionGpGained;
+    private final int sessionFirstKillTick;
+    private final int capturedTick;
+    private final int recentMinutes;
+    private final int recentKills;
+    private final int[] breakdownKills;
+    private final double killPacePerHour;
+    private final double gpPacePerHour;
+    private final int[] gapTicks;
+    private final int worstGapTicks;
+
+    NpcStats(int killCount, long totalGpGained, int firstKillTick, int lastKillTick,
+        int sessionKillCount, long sessionGpGained, int sessionFirstKillTick, int capturedTick, int recentMinutes, int recentKills, int[] breakdownKills,
+        double killPacePerHour, double gpPacePerHour, int[] gapTicks, int worstGapTicks)
+    {
+        this.killCount = killCount;
+        this.totalGpGained = totalGpGained;
+        this.firstKillTick = firstKillTick;
+        this.lastKillTick = lastKillTick;
+        this.sessionKillCount = sessionKillCount;
+        this.sessionGpGained = sessionGpGained;
+        this.sessionFirstKillTick = sessionFirstKillTick;
+        this.capturedTick = capturedTick;
+        this.recentMinutes = recentMinutes;
+        this.recentKills = recentKills;
+        this.breakdownKills = breakdownKills;
+        this.killPacePerHour = killPacePerHour;
+        this.gpPacePerHour = gpPacePerHour;
+        this.gapTicks = gapTicks;
+        this.worstGapTicks = worstGapTicks;
+    }
+
+    int getKillCount()
+    {
+        return killCount;
+    }
+
+    long getTotalGpGained()
+    {
+        return totalGpGained;
+    }
+
+    int getFirstKillTick()
+    {
+        return firstKillTick;
+    }
+
+    int getLastKillTick()
+    {
+        return lastKillTick;
+    }
+
+    /**
+     * Tick the snapshot was taken at.
+     */
+    int getCapturedTick()
+    {
+        return capturedTick;
+    }
+
+    int getRecentMinutes()
+    {
+        return recentMinutes;
+    }
+
+    /**
+     * Kills per hour between this session's first and last kill, from its
+     * second kill on. History restored from an earlier session is left out,
+     * since the time between sessions was not spent killing.
+     */
+    double getKillsPerHour()
+    {
+        if (sessionKillCount < 2 || lastKillTick <= sessionFirstKillTick)
+        {
+            return 0.0;
+        }
+
+        return (sessionKillCount - 1) / TickClock.ticksToHours(lastKillTick - sessionFirstKillTick);
+    }
+
+    double getRecentKillsPerHour()
+    {
+        if (recentKills == 0 || recentMinutes <= 0)
+        {
+            return 0.0;
+        }
+
+        return recentKills / (recentMinutes / 60.0);
+    }
+
+    /**
+     * Kills per hour over {@code BREAKDOWN_WINDOWS[index]} minutes.
+     */
+    double getBreakdownKillsPerHour(int index)
+    {
+        return breakdownKills[index] / (BREAKDOWN_WINDOWS[index] / 60.0);
+    }
+
+    /**
+     * GP per hour between this session's first and last kill.
+     */
+    double getGpPerHour()
+    {
+        if (sessionGpGained == 0 || lastKillTick <= sessionFirstKillTick)
+        {
+            return 0.0;
+        }
+
+        return sessionGpGained / TickClock.ticksToHours(lastKillTick - sessionFirstKillTick);
+    }
+
+    /**
+     * Smoothed kills per hour, weighing each kill less as it ages.
+     */
+    double getKillPacePerHour()
+    {
+        return killPacePerHour;
+    }
+
+    /**
+     * Smoothed GP per hour, weighing each drop less as it ages.
+     */
+    double getGpPacePerHour()
+    {
+        return gpPacePerHour;
+    }
+
+    /**
+     * Recent kills per hour as the config asks for it: over the recent
+     * window, or as the smoothed pace.
+     */
+    double getRecentKillsPerHour(NpcKphTrackerConfig.RateMode mode)
+    {
+        return mode == NpcKphTrackerConfig.RateMode.SMOOTHED ? killPacePerHour : getRecentKillsPerHour();
+    }
+
+    /**
+     * GP per hour as the config asks for it: across the session, or as the
+     * smoothed pace.
+     */
+    double getGpPerHour(NpcKphTrackerConfig.RateMode mode)
+    {
+        return mode == NpcKphTrackerConfig.RateMode.SMOOTHED ? gpPacePerHour : getGpPerHour();
+    }
+
+    /**
+     * Ticks between kills at {@code GAP_PERCENTILES[index]}, or 0 before the
+     * second kill of the session.
+     */
+    int getGapTicks(int index)
+    {
+        return gapTicks[index];
+    }
+
+    /**
+     * Longest time between two kills this session, in ticks.
+     */
+    int getWorstGapTicks()
+    {
+        return worstGapTicks;
+    }
+
+    double getAverageGpPerKill()
+    {
+        return killCount == 0 ? 0.0 : (double) totalGpGained / killCount;
+    }
+
+    /**
+     * Ticks from this session's first retained kill until the snapshot, or 0
+     * with no kills this session.
+     */
+    int getSessionTicks()
+    {
+        return sessionFirstKillTick == NpcTrackingData.NO_KILL ? 0 : Math.max(0, capturedTick - sessionFirstKillTick);
+    }
+}
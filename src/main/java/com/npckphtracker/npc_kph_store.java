@@ -0,0 +1,138 @@
+package com.npckphtracker;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracking data for every NPC type, stored densely by an interned int key.
+ * Each distinct NPC name gets the next key the first time it is seen, and each
+ * NPC composition id is mapped to its name's key, so the kill path resolves an
+ * NPC with a primitive lookup instead of hashing its name.
+ *
+ * Written on the client thread only. Readers on other threads go through
+ * {@link NpcTrackingView}, which reads the arrays after the volatile count and
+ * only hands out published {@link NpcStats} snapshots.
+ */
+class NpcTrackingStore implements NpcTrackingView
+{
+    static final int NO_KEY = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final IntIntMap keysByNpcId = new IntIntMap(64, NO_KEY);
+    private final Map<String, Integer> keysByName = new ConcurrentHashMap<>();
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private NpcTrackingData[] data = new NpcTrackingData[INITIAL_CAPACITY];
+    private volatile int size;
+
+    /**
+     * Key for an NPC composition, interning its name on first sight.
+     */
+    int intern(int npcId, String name)
+    {
+        int key = keysByNpcId.get(npcId);
+        if (key == NO_KEY)
+        {
+            key = intern(name);
+            keysByNpcId.put(npcId, key);
+        }
+        return key;
+    }
+
+    int intern(String name)
+    {
+        Integer key = keysByName.get(name);
+        if (key != null)
+        {
+            return key;
+        }
+
+        int newKey = size;
+        if (newKey == names.length)
+        {
+            names = Arrays.copyOf(names, newKey * 2);
+            data = Arrays.copyOf(data, newKey * 2);
+        }
+        names[newKey] = name;
+        keysByName.put(name, newKey);
+        size = newKey + 1;
+        return newKey;
+    }
+
+    NpcTrackingData getOrCreate(int key)
+    {
+        NpcTrackingData tracking = data[key];
+        if (tracking == null)
+        {
+            tracking = new NpcTrackingData();
+            data[key] = tracking;
+        }
+        return tracking;
+    }
+
+    /**
+     * Drops an NPC's tracking data. The key and name stay interned so the
+     * NPC resolves to the same key if it is killed again.
+     */
+    void remove(int key)
+    {
+        data[key] = null;
+    }
+
+    void clear()
+    {
+        Arrays.fill(data, null);
+    }
+
+    @Override
+    public int keyOf(String name)
+    {
+        Integer key = keysByName.get(name);
+        return key != null ? key : NO_KEY;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public String getName(int key)
+    {
+        return key >= 0 && key < size ? names[key] : null;
+    }
+
+    /**
+     * Mutable tracking data for a key. Client thread only.
+     */
+    NpcTrackingData get(int key)
+    {
+        return key >= 0 && key < size ? data[key] : null;
+    }
+
+    @Override
+    public NpcStats getStats(int key)
+    {
+        NpcTrackingData tracking = get(key);
+        return tracking != null ? tracking.getStats() : null;
+    }
+}
+
+/**
+ * Read-only view of the tracked NPCs for threads other than the client thread.
+ * Keys run from 0 to {@link #size()}; a key whose data has expired or been
+ * removed returns null from {@link #getStats(int)}.
+ */
+interface NpcTrackingView
+{
+    int keyOf(String name);
+
+    int size();
+
+    String getName(int key);
+
+    NpcStats getStats(int key);
+}
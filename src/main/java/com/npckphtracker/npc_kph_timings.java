@@ -0,0 +1,252 @@
+package com.npckphtracker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Cost accounting for the plugin's event handlers and overlay render. Latency
+ * histograms are recorded while Show Handler Timings is on; bytes allocated
+ * are recorded while Track Allocations is on and averaged per game tick over
+ * the last minute. Everything measured here runs on the client thread, which
+ * is also where the timings overlay reads the histograms. The allocation
+ * averages are published for the panel once per tick.
+ */
+@Slf4j
+class HandlerTimings
+{
+    enum Handler
+    {
+        ACTOR_DEATH("onActorDeath", false),
+        ITEM_CONTAINER("onItemContainerChanged", false),
+        NPC_LOOT("onNpcLootReceived", false),
+        GAME_TICK("onGameTick", false),
+        CLEANUP("cleanupOldData", true),
+        RENDER("render", false);
+
+        private final String label;
+        // Runs inside another handler, so its cost is already counted there
+        private final boolean nested;
+
+        Handler(String label, boolean nested)
+        {
+            this.label = label;
+            this.nested = nested;
+        }
+
+        String getLabel()
+        {
+            return label;
+        }
+
+        boolean isNested()
+        {
+            return nested;
+        }
+    }
+
+    static final int ALLOCATION_WINDOW_TICKS = TickClock.TICKS_PER_MINUTE;
+    private static final int HANDLERS = Handler.values().length;
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[HANDLERS];
+    private volatile boolean enabled;
+
+    private volatile boolean allocationsEnabled;
+    // Bytes the allocation counter itself allocates per read, subtracted from every sample
+    private long samplerBytes;
+    private final long[] allocationStart = new long[HANDLERS];
+    private final long[] tickBytes = new long[HANDLERS];
+    private final long[][] windowBytes = new long[ALLOCATION_WINDOW_TICKS][HANDLERS];
+    private final long[] windowTotals = new long[HANDLERS];
+    private int windowNext;
+    private int windowTicks;
+    private volatile long[] averageBytes;
+
+    HandlerTimings()
+    {
+        for (int i = 0; i < histograms.length; i++)
+        {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Turns timing on or off. Turning it on starts from empty histograms.
+     * Client thread only.
+     */
+    void setEnabled(boolean enabled)
+    {
+        if (enabled && !this.enabled)
+        {
+            for (LatencyHistogram histogram : histograms)
+            {
+                histogram.reset();
+            }
+        }
+        this.enabled = enabled;
+    }
+
+    boolean isAllocationsEnabled()
+    {
+        return allocationsEnabled;
+    }
+
+    /**
+     * Turns allocation accounting on or off, starting from an empty window.
+     * Stays off where the JVM cannot count allocations per thread. Client
+     * thread only.
+     */
+    void setAllocationsEnabled(boolean allocationsEnabled)
+    {
+        if (allocationsEnabled && !this.allocationsEnabled)
+        {
+            if (THREADS == null)
+            {
+                log.warn("This JVM cannot count allocated bytes per thread, allocation tracking is unavailable");
+                return;
+            }
+
+            if (!THREADS.isThreadAllocatedMemoryEnabled())
+            {
+                THREADS.setThreadAllocatedMemoryEnabled(true);
+            }
+            samplerBytes = calibrateSampler();
+            for (long[] tick : windowBytes)
+            {
+                Arrays.fill(tick, 0);
+            }
+            Arrays.fill(windowTotals, 0);
+            Arrays.fill(tickBytes, 0);
+            Arrays.fill(allocationStart, -1);
+            windowNext = 0;
+            windowTicks = 0;
+        }
+        else if (!allocationsEnabled)
+        {
+            averageBytes = null;
+        }
+        this.allocationsEnabled = allocationsEnabled;
+    }
+
+    /**
+     * Starts measuring a handler. Returns the start time to hand to
+     * {@link #stop}, or 0 when timing is off.
+     */
+    long start(Handler handler)
+    {
+        if (allocationsEnabled)
+        {
+            allocationStart[handler.ordinal()] = allocatedBytes();
+        }
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void stop(Handler handler, long start)
+    {
+        if (start != 0)
+        {
+            histograms[handler.ordinal()].record(System.nanoTime() - start);
+        }
+
+        int index = handler.ordinal();
+        if (allocationsEnabled && allocationStart[index] >= 0)
+        {
+            tickBytes[index] += Math.max(0, allocatedBytes() - allocationStart[index] - samplerBytes);
+            allocationStart[index] = -1;
+        }
+    }
+
+    /**
+     * Closes the current game tick's allocation accounting and publishes the
+     * averages over the window. Called once per game tick after the tick's
+     * own handler has been measured.
+     */
+    void endTick()
+    {
+        if (!allocationsEnabled)
+        {
+            return;
+        }
+
+        long[] oldest = windowBytes[windowNext];
+        long[] average = new long[HANDLERS];
+        windowTicks = Math.min(windowTicks + 1, ALLOCATION_WINDOW_TICKS);
+        for (int i = 0; i < HANDLERS; i++)
+        {
+            windowTotals[i] += tickBytes[i] - oldest[i];
+            oldest[i] = tickBytes[i];
+            tickBytes[i] = 0;
+            average[i] = windowTotals[i] / windowTicks;
+        }
+        windowNext = (windowNext + 1) % ALLOCATION_WINDOW_TICKS;
+        averageBytes = average;
+    }
+
+    /**
+     * Average bytes allocated per game tick by each handler, indexed by
+     * {@link Handler#ordinal()}, over the last minute of ticks; null while
+     * allocation tracking is off or before the first tick. Safe to read from
+     * any thread.
+     */
+    long[] getAverageAllocatedBytes()
+    {
+        return averageBytes;
+    }
+
+    /**
+     * Sum of the averages for handlers that are not nested in another.
+     */
+    static long totalBytes(long[] averageBytes)
+    {
+        long total = 0;
+        for (Handler handler : Handler.values())
+        {
+            if (!handler.isNested())
+            {
+                total += averageBytes[handler.ordinal()];
+            }
+        }
+        return total;
+    }
+
+    LatencyHistogram get(Handler handler)
+    {
+        return histograms[handler.ordinal()];
+    }
+
+    private static long allocatedBytes()
+    {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long calibrateSampler()
+    {
+        // Older JVMs allocate a few arrays per read; take the smallest of several
+        long smallest = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++)
+        {
+            long before = allocatedBytes();
+            long after = allocatedBytes();
+            smallest = Math.min(smallest, after - before);
+        }
+        return Math.max(0, smallest);
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            return (com.sun.management.ThreadMXBean) bean;
+        }
+        return null;
+    }
+}
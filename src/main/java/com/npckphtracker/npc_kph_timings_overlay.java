@@ -0,0 +1,121 @@
+package com.npckphtracker;
+
+import net.runelite.client.ui.overlay.OverlayPanel;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LayoutableRenderableEntity;
+import net.runelite.client.ui.overlay.components.LineComponent;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+import javax.inject.Inject;
+import java.awt.*;
+import java.text.DecimalFormat;
+import java.util.List;
+
+/**
+ * Debug overlay showing p50/p99/max and call counts for each timed handler.
+ * Lines are rebuilt once per game tick rather than every frame.
+ */
+public class HandlerTimingsOverlay extends OverlayPanel
+{
+    private static final DecimalFormat COUNT_FORMAT = new DecimalFormat("#,###");
+    private static final DecimalFormat DURATION_FORMAT = new DecimalFormat("#.#");
+
+    private final HandlerTimings timings;
+    // Game tick count the lines were last built at
+    private long builtAt = -1;
+
+    @Inject
+    private HandlerTimingsOverlay(NpcKphTrackerPlugin plugin)
+    {
+        this(plugin.getTimings());
+    }
+
+    HandlerTimingsOverlay(HandlerTimings timings)
+    {
+        this.timings = timings;
+        setPosition(OverlayPosition.TOP_RIGHT);
+        setClearChildren(false);
+        panelComponent.setPreferredSize(new Dimension(260, 0));
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics)
+    {
+        if (!timings.isEnabled())
+        {
+            builtAt = -1;
+            return null;
+        }
+
+        long ticks = timings.get(HandlerTimings.Handler.GAME_TICK).getCount();
+        if (ticks != builtAt)
+        {
+            buildLines();
+            builtAt = ticks;
+        }
+
+        return super.render(graphics);
+    }
+
+    private void buildLines()
+    {
+        List<LayoutableRenderableEntity> lines = panelComponent.getChildren();
+        lines.clear();
+        lines.add(TitleComponent.builder()
+            .text("Handler Timings")
+            .color(Color.WHITE)
+            .build());
+        lines.add(LineComponent.builder()
+            .left("Handler (calls)")
+            .right("p50 / p99 / max")
+            .leftColor(Color.GRAY)
+            .rightColor(Color.GRAY)
+            .build());
+
+        for (HandlerTimings.Handler handler : HandlerTimings.Handler.values())
+        {
+            LatencyHistogram histogram = timings.get(handler);
+            lines.add(LineComponent.builder()
+                .left(handler.getLabel() + " (" + COUNT_FORMAT.format(histogram.getCount()) + ")")
+                .right(formatNanos(histogram.getPercentile(0.5)) + " / "
+                    + formatNanos(histogram.getPercentile(0.99)) + " / "
+                    + formatNanos(histogram.getMax()))
+                .leftColor(Color.LIGHT_GRAY)
+                .rightColor(getLatencyColor(histogram.getPercentile(0.99)))
+                .build());
+        }
+    }
+
+    private static String formatNanos(long nanos)
+    {
+        if (nanos >= 1_000_000)
+        {
+            return DURATION_FORMAT.format(nanos / 1_000_000.0) + "ms";
+        }
+        else if (nanos >= 1_000)
+        {
+            return DURATION_FORMAT.format(nanos / 1_000.0) + "µs";
+        }
+        else
+        {
+            return nanos + "ns";
+        }
+    }
+
+    private static Color getLatencyColor(long nanos)
+    {
+        // A frame at 50fps is 20ms; anything near a millisecond is worth a look
+        if (nanos >= 1_000_000)
+        {
+            return Color.RED;
+        }
+        else if (nanos >= 100_000)
+        {
+            return Color.YELLOW;
+        }
+        else
+        {
+            return Color.GREEN;
+        }
+    }
+}
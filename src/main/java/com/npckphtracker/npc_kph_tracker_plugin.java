@@ -7,19 +7,30 @@ import net.runelite.api.events.ActorDeath;
 import net.runelite.api.events.GameTick;
 import net.runelite.api.events.VarbitChanged;
 import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.events.NpcLootReceived;
+import net.runelite.client.game.ItemStack;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
+import net.runelite.client.RuneLite;
+import net.runelite.client.ui.ClientToolbar;
+import net.runelite.client.ui.NavigationButton;
 import net.runelite.client.ui.overlay.OverlayManager;
+import net.runelite.client.util.ImageUtil;
 import net.runelite.client.game.ItemManager;
 
 import javax.inject.Inject;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 @Slf4j
 @PluginDescriptor(
@@ -29,6 +40,10 @@ import java.util.concurrent.ConcurrentHashMap;
 )
 public class NpcKphTrackerPlugin extends Plugin
 {
+    private static final int PRICE_REFRESHES_PER_TICK = 8;
+    private static final File DATA_DIRECTORY = new File(RuneLite.RUNELITE_DIR, "npc-kph-tracker");
+    private static final int CHECKPOINT_INTERVAL_TICKS = 10 * TickClock.TICKS_PER_MINUTE;
+
     @Inject
     private Client client;
 
@@ -41,58 +56,244 @@ public class NpcKphTrackerPlugin extends Plugin
     @Inject
     private NpcKphTrackerOverlay overlay;
 
+    @Inject
+    private HandlerTimingsOverlay timingsOverlay;
+
     @Inject
     private ItemManager itemManager;
 
-    private final Map<String, NpcTrackingData> npcTrackingMap = new ConcurrentHashMap<>();
-    private String currentTrackedNpc = null;
-    private boolean isTracking = false;
-    private SlayerTaskData currentSlayerTask = null;
-    private int previousInventoryValue = 0;
+    @Inject
+    private ClientThread clientThread;
+
+    @Inject
+    private ClientToolbar clientToolbar;
+
+    @Inject
+    private ScheduledExecutorService executor;
+
+    // Written on the client thread; volatile so the panel reads current values
+    private volatile String currentTrackedNpc = null;
+    private int currentTrackedKey = NpcTrackingStore.NO_KEY;
+    private volatile boolean isTracking = false;
+    private volatile SlayerTaskData currentSlayerTask = null;
+    private volatile String estimatedTimeRemaining = null;
+    private SlayerTaskMatcher slayerTaskMatcher = null;
+    private SlayerCreatureTable slayerCreatureTable;
+    private long previousInventoryValue = 0;
     private boolean trackingInventoryValue = false;
+    private final TickClock clock;
+    private final File dataDirectory;
+    private final NpcTrackingStore trackingStore = new NpcTrackingStore();
+    private ItemPriceCache priceCache;
+    private InventoryValuation inventoryValuation;
+    private final RecentDeaths recentDeaths = new RecentDeaths();
+    private final HandlerTimings timings = new HandlerTimings();
+    private final NpcLeaderboard leaderboard = new NpcLeaderboard();
+    private final ExpiryWheel expiryWheel = new ExpiryWheel();
+    private final IntConsumer expireNpc = this::expireNpc;
+    private int[] leaderboardKeys = new int[0];
+    // Leaderboard mod count the overlay was last built at
+    private int leaderboardBuiltAt = -1;
+    private volatile OverlayViewModel overlayViewModel = OverlayViewModel.EMPTY;
+    private volatile NpcStats trackedStats = NpcStats.EMPTY;
+    private NpcKphTrackerPanel panel;
+    private NavigationButton navButton;
+    private PanelUpdatePublisher panelPublisher;
+    // Read on the EDT when exporting
+    private volatile KillJournal journal;
+    // Last slayer task in the journal, so a restart keeps the task's original size
+    private int journaledTaskCreature;
+    private int journaledTaskAmount;
+    private int checkpointId;
+    // Journal append count the last checkpoint was taken at
+    private long checkpointMark;
+    private int lastCheckpointTick = Integer.MIN_VALUE / 2;
+    private SessionRecorder recorder;
+
+    public NpcKphTrackerPlugin()
+    {
+        this(new TickClock(), DATA_DIRECTORY);
+    }
+
+    /**
+     * Plugin with its own clock and storage, for replaying recorded sessions.
+     */
+    NpcKphTrackerPlugin(TickClock clock, File dataDirectory)
+    {
+        this.clock = clock;
+        this.dataDirectory = dataDirectory;
+    }
 
     @Override
     protected void startUp() throws Exception
     {
         overlayManager.add(overlay);
+        overlayManager.add(timingsOverlay);
+        timings.setEnabled(config.showHandlerTimings());
+        timings.setAllocationsEnabled(config.trackAllocations());
+        slayerCreatureTable = SlayerCreatureTable.load();
+        openJournal();
+        if (config.recordSessions())
+        {
+            startRecording();
+        }
+
+        panel = new NpcKphTrackerPanel(this, config);
+        panelPublisher = new PanelUpdatePublisher(panel::refresh);
+        navButton = NavigationButton.builder()
+            .tooltip("NPC KPH Tracker")
+            .icon(ImageUtil.loadImageResource(getClass(), "panel_icon.png"))
+            .priority(7)
+            .panel(panel)
+            .build();
+        clientToolbar.addNavigation(navButton);
+        priceCache = new ItemPriceCache(this::lookupPrice, clock);
+        inventoryValuation = new InventoryValuation(priceCache::getPrice);
+
         // Initialize inventory tracking
         if (client.getLocalPlayer() != null)
         {
             previousInventoryValue = calculateInventoryValue();
             trackingInventoryValue = true;
         }
+        if (recorder != null)
+        {
+            recorder.recordStarted(client.getLocalPlayer() != null);
+        }
     }
 
     @Override
     protected void shutDown() throws Exception
     {
         overlayManager.remove(overlay);
+        overlayManager.remove(timingsOverlay);
+        clientToolbar.removeNavigation(navButton);
+        recentDeaths.clear();
+        if (journal != null)
+        {
+            journal.close();
+            journal = null;
+        }
+        if (recorder != null)
+        {
+            recorder.close();
+            recorder = null;
+        }
+        overlayViewModel = OverlayViewModel.EMPTY;
+        trackedStats = NpcStats.EMPTY;
+        estimatedTimeRemaining = null;
+        leaderboard.clear();
+        leaderboardBuiltAt = -1;
+        expiryWheel.clear();
+
+        log.debug("Price cache: {} hits, {} misses, {} evictions, {} refreshes",
+            priceCache.getHits(), priceCache.getMisses(), priceCache.getEvictions(), priceCache.getRefreshes());
     }
 
     @Subscribe
     public void onItemContainerChanged(ItemContainerChanged itemContainerChanged)
     {
+        long start = timings.start(HandlerTimings.Handler.ITEM_CONTAINER);
+        try
+        {
+            handleItemContainerChanged(itemContainerChanged);
+        }
+        finally
+        {
+            timings.stop(HandlerTimings.Handler.ITEM_CONTAINER, start);
+        }
+    }
+
+    private void handleItemContainerChanged(ItemContainerChanged itemContainerChanged)
+    {
+        if (recorder != null && itemContainerChanged.getContainerId() == InventoryID.INVENTORY.getId())
+        {
+            recorder.recordInventory(itemContainerChanged.getItemContainer().getItems());
+        }
+
+        if (config.gpTrackingMode() != NpcKphTrackerConfig.GpTrackingMode.INVENTORY
+            || itemContainerChanged.getContainerId() != InventoryID.INVENTORY.getId())
+        {
+            return;
+        }
+
+        if (!trackingInventoryValue)
+        {
+            // First inventory seen since startup only sets the baseline
+            previousInventoryValue = inventoryValuation.update(itemContainerChanged.getItemContainer().getItems());
+            trackingInventoryValue = true;
+            return;
+        }
+
         // Track inventory changes to calculate GP gains
-        if (itemContainerChanged.getContainerId() == InventoryID.INVENTORY.getId() && trackingInventoryValue)
+        long currentInventoryValue = inventoryValuation.update(itemContainerChanged.getItemContainer().getItems());
+        long gpGain = currentInventoryValue - previousInventoryValue;
+        
+        // Only track positive gains above a threshold to avoid noise
+        if (gpGain > 0 && isTracking && currentTrackedNpc != null)
         {
-            int currentInventoryValue = calculateInventoryValue();
-            int gpGain = currentInventoryValue - previousInventoryValue;
-            
-            // Only track positive gains above a threshold to avoid noise
-            if (gpGain > 0 && isTracking && currentTrackedNpc != null)
+            NpcTrackingData data = getCurrentTrackedData();
+            if (data != null)
             {
-                NpcTrackingData data = npcTrackingMap.get(currentTrackedNpc);
-                if (data != null)
-                {
-                    data.addGpGain(gpGain);
-                }
+                data.addGpGain(clock.now(), gpGain, gpPaceHalfLifeTicks());
+                appendJournal(KillJournal.TYPE_GP, currentTrackedKey, gpGain);
+                panelPublisher.markDirty();
             }
-            
-            previousInventoryValue = currentInventoryValue;
+        }
+        
+        previousInventoryValue = currentInventoryValue;
+    }
+
+    @Subscribe
+    public void onNpcLootReceived(NpcLootReceived npcLootReceived)
+    {
+        long start = timings.start(HandlerTimings.Handler.NPC_LOOT);
+        try
+        {
+            handleNpcLootReceived(npcLootReceived);
+        }
+        finally
+        {
+            timings.stop(HandlerTimings.Handler.NPC_LOOT, start);
+        }
+    }
+
+    private void handleNpcLootReceived(NpcLootReceived npcLootReceived)
+    {
+        if (recorder != null)
+        {
+            recorder.recordLoot(RecentDeaths.packTile(npcLootReceived.getNpc().getWorldLocation()), npcLootReceived.getItems());
+        }
+
+        if (config.gpTrackingMode() != NpcKphTrackerConfig.GpTrackingMode.LOOT_DROPS)
+        {
+            return;
+        }
+
+        // Attribute the drop to the kill that died on this tile
+        NPC npc = npcLootReceived.getNpc();
+        int key = recentDeaths.claim(RecentDeaths.packTile(npc.getWorldLocation()), clock.now());
+        NpcTrackingData data = trackingStore.get(key);
+        if (data == null)
+        {
+            return;
+        }
+
+        long lootValue = 0;
+        for (ItemStack item : npcLootReceived.getItems())
+        {
+            lootValue += (long) priceCache.getPrice(item.getId()) * item.getQuantity();
+        }
+
+        if (lootValue > 0)
+        {
+            data.addGpGain(clock.now(), lootValue, gpPaceHalfLifeTicks());
+            appendJournal(KillJournal.TYPE_GP, key, lootValue);
+            panelPublisher.markDirty();
         }
     }
 
-    private int calculateInventoryValue()
+    private long calculateInventoryValue()
     {
         if (client.getLocalPlayer() == null)
         {
@@ -105,30 +306,38 @@ public class NpcKphTrackerPlugin extends Plugin
             return 0;
         }
 
-        int totalValue = 0;
-        for (Item item : inventory.getItems())
-        {
-            if (item.getId() > 0)
-            {
-                int itemPrice = itemManager.getItemPrice(item.getId());
-                totalValue += itemPrice * item.getQuantity();
-            }
-        }
-        
-        return totalValue;
+        return inventoryValuation.update(inventory.getItems());
     }
+    @Subscribe
     public void onVarbitChanged(VarbitChanged varbitChanged)
     {
         // Check for slayer task changes
-        if (varbitChanged.getVarbits().containsKey(VarPlayer.SLAYER_TASK_SIZE) ||
-            varbitChanged.getVarbits().containsKey(VarPlayer.SLAYER_TASK_CREATURE))
+        if (varbitChanged.getVarpId() == VarPlayer.SLAYER_TASK_SIZE ||
+            varbitChanged.getVarpId() == VarPlayer.SLAYER_TASK_CREATURE)
         {
+            if (recorder != null)
+            {
+                recorder.recordVarp(varbitChanged.getVarpId(), varbitChanged.getValue());
+            }
             updateSlayerTask();
         }
     }
 
     @Subscribe
     public void onActorDeath(ActorDeath actorDeath)
+    {
+        long start = timings.start(HandlerTimings.Handler.ACTOR_DEATH);
+        try
+        {
+            handleActorDeath(actorDeath);
+        }
+        finally
+        {
+            timings.stop(HandlerTimings.Handler.ACTOR_DEATH, start);
+        }
+    }
+
+    private void handleActorDeath(ActorDeath actorDeath)
     {
         if (actorDeath.getActor() instanceof NPC)
         {
@@ -140,10 +349,17 @@ public class NpcKphTrackerPlugin extends Plugin
                 return;
             }
 
+            if (recorder != null)
+            {
+                Player player = client.getLocalPlayer();
+                recorder.recordNpcDeath(npc.getId(), npc.getName(), RecentDeaths.packTile(npc.getWorldLocation()),
+                    player != null && npc.getInteracting() == player, player != null && player.getInteracting() == npc);
+            }
+
             // Track all NPCs regardless of type
 
             // Check if this kill is for current slayer task
-            if (currentSlayerTask != null && isSlayerTaskNpc(npc.getName()))
+            if (currentSlayerTask != null && isSlayerTaskNpc(npc))
             {
                 currentSlayerTask.decrementRemaining();
             }
@@ -151,7 +367,7 @@ public class NpcKphTrackerPlugin extends Plugin
             // Check if player was in combat with this NPC
             if (wasPlayerInCombatWith(npc))
             {
-                trackNpcKill(npc.getName());
+                trackNpcKill(npc);
             }
         }
     }
@@ -159,25 +375,375 @@ public class NpcKphTrackerPlugin extends Plugin
     @Subscribe
     public void onGameTick(GameTick gameTick)
     {
-        // Clean up old data periodically
+        long start = timings.start(HandlerTimings.Handler.GAME_TICK);
+        try
+        {
+            handleGameTick(gameTick);
+        }
+        finally
+        {
+            timings.stop(HandlerTimings.Handler.GAME_TICK, start);
+            timings.endTick();
+        }
+    }
+
+    private void handleGameTick(GameTick gameTick)
+    {
+        if (recorder != null)
+        {
+            recorder.recordGameTick(client.getTickCount());
+        }
+        clock.onGameTick(client.getTickCount());
+
+        // Reload a few stale prices now rather than while handling inventory events
+        priceCache.refreshStale(PRICE_REFRESHES_PER_TICK);
+
+        // Expire kills that have left the retention window
         cleanupOldData();
+        checkpointIfDue();
+
+        publishSnapshots();
+        panelPublisher.onTick(clock.now(), panel.isActive());
     }
 
-    private void trackNpcKill(String npcName)
+    @Subscribe
+    public void onConfigChanged(ConfigChanged configChanged)
     {
-        Instant now = Instant.now();
-        
-        NpcTrackingData data = npcTrackingMap.computeIfAbsent(npcName, k -> new NpcTrackingData());
-        data.addKill(now);
+        if (NpcKphTrackerConfig.GROUP.equals(configChanged.getGroup()))
+        {
+            clientThread.invokeLater(() ->
+            {
+                if (recorder != null)
+                {
+                    recorder.recordConfig(configChanged.getKey(), configChanged.getNewValue());
+                }
+                timings.setEnabled(config.showHandlerTimings());
+                timings.setAllocationsEnabled(config.trackAllocations());
+                // Scores depend on the config, so rank everything again
+                leaderboard.clear();
+                if ("dataRetentionHours".equals(configChanged.getKey()))
+                {
+                    scheduleAllExpiries();
+                }
+                updateTimeEstimate();
+                publishSnapshots();
+                panelPublisher.markDirty();
+            });
+        }
+    }
+
+    /**
+     * Publishes stats snapshots for every NPC that changed, moves those NPCs
+     * on the leaderboard and rebuilds the overlay's lines. Runs on the client
+     * thread; the overlay and panel only ever read what was last published
+     * here.
+     */
+    private void publishSnapshots()
+    {
+        int now = clock.now();
+        int recentMinutes = config.recentTimeMinutes();
+        int paceHalfLife = paceHalfLifeTicks();
+        int gpPaceHalfLife = gpPaceHalfLifeTicks();
+        NpcTrackingData tracked = getCurrentTrackedData();
+        for (int key = 0; key < trackingStore.size(); key++)
+        {
+            NpcTrackingData data = trackingStore.get(key);
+            if (data != null)
+            {
+                NpcStats previous = data.getStats();
+                NpcStats published = data.publish(now, recentMinutes, paceHalfLife, gpPaceHalfLife, data == tracked);
+                if (published != previous || !leaderboard.contains(key))
+                {
+                    rank(key, published);
+                }
+            }
+        }
+
+        trackedStats = tracked != null ? tracked.getStats() : NpcStats.EMPTY;
+        if (config.showLeaderboard())
+        {
+            buildLeaderboard();
+        }
+        else
+        {
+            leaderboardBuiltAt = -1;
+            overlayViewModel = OverlayViewModel.build(this, config);
+        }
+    }
+
+    private void rank(int key, NpcStats stats)
+    {
+        if (stats.getKillCount() == 0)
+        {
+            leaderboard.remove(key);
+            return;
+        }
+
+        leaderboard.update(key, config.leaderboardMetric() == NpcKphTrackerConfig.LeaderboardMetric.GP_PER_HOUR
+            ? stats.getGpPerHour(config.rateMode())
+            : stats.getRecentKillsPerHour(config.rateMode()));
+    }
+
+    /**
+     * Rebuilds the leaderboard overlay, only when the ranking has moved since
+     * it was last built.
+     */
+    private void buildLeaderboard()
+    {
+        if (leaderboard.getModCount() == leaderboardBuiltAt)
+        {
+            return;
+        }
+
+        if (leaderboardKeys.length != config.leaderboardSize())
+        {
+            leaderboardKeys = new int[config.leaderboardSize()];
+        }
+        int count = leaderboard.top(leaderboardKeys);
+        String[] names = new String[count];
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++)
+        {
+            names[i] = trackingStore.getName(leaderboardKeys[i]);
+            scores[i] = leaderboard.getScore(leaderboardKeys[i]);
+        }
+
+        overlayViewModel = OverlayViewModel.buildLeaderboard(config, names, scores, currentTrackedNpc);
+        leaderboardBuiltAt = leaderboard.getModCount();
+    }
+
+    private void trackNpcKill(NPC npc)
+    {
+        int key = trackingStore.intern(npc.getId(), npc.getName());
+        int now = clock.now();
+
+        NpcTrackingData data = trackingStore.getOrCreate(key);
+        data.addKill(now, paceHalfLifeTicks());
+        if (!expiryWheel.isScheduled(key))
+        {
+            scheduleExpiry(key, data);
+        }
+        appendJournal(KillJournal.TYPE_KILL, key, 0);
+        recentDeaths.record(RecentDeaths.packTile(npc.getWorldLocation()), now, key);
         
         // Set as current tracked NPC if auto-tracking is enabled
         if (config.autoTrackLastKilled())
         {
-            currentTrackedNpc = npcName;
+            currentTrackedNpc = trackingStore.getName(key);
+            currentTrackedKey = key;
             isTracking = true;
+            leaderboardBuiltAt = -1;
+        }
+
+        updateTimeEstimate();
+        publishSnapshots();
+        panelPublisher.markDirty();
+    }
+
+    /**
+     * Opens the kill journal and restores the history it holds, starting from
+     * the latest checkpoint when there is one so only the journal tail has to
+     * be replayed. Tracking still works without it, just without history
+     * across restarts.
+     */
+    private void openJournal()
+    {
+        try
+        {
+            journal = KillJournal.open(dataDirectory);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to open kill journal, history will not be kept", e);
+            return;
+        }
+
+        // Journal records use store keys, so names are interned in journal order
+        trackingStore.clear();
+        List<String> names = journal.getNames();
+        for (int key = 0; key < names.size(); key++)
+        {
+            if (trackingStore.intern(names.get(key)) != key)
+            {
+                log.warn("Kill journal names do not match tracked NPCs, history will not be kept");
+                journal.close();
+                journal = null;
+                return;
+            }
+        }
+
+        long cutoff = retentionCutoffMillis();
+        KillJournal.Visitor replay = (type, key, epochMillis, value) -> replayRecord(type, key, epochMillis, value, cutoff);
+        checkpointId = journal.getCheckpointId();
+        KillCheckpoint checkpoint = KillCheckpoint.open(dataDirectory, checkpointId);
+        if (checkpoint != null)
+        {
+            int restored = checkpoint.restore(trackingStore, clock);
+            journaledTaskCreature = checkpoint.getSlayerCreature();
+            journaledTaskAmount = checkpoint.getSlayerAmount();
+            journal.replay(journal.getCheckpointOffset(), replay);
+            checkpointMark = 0;
+            log.debug("Restored {} NPCs from checkpoint {}", restored, checkpointId);
+        }
+        else
+        {
+            journal.replay(replay);
+            // Take a checkpoint soon so the next startup does not replay everything again
+            checkpointMark = -1;
+        }
+        journal.start(executor, trackingStore, this::retentionCutoffMillis);
+        scheduleAllExpiries();
+    }
+
+    /**
+     * Captures the tracking state every few minutes if anything was journaled
+     * since the last checkpoint, and writes it out on the executor. The clock
+     * is put back onto the wall clock first, so neither the checkpoint nor the
+     * journal records after it carry the drift from server lag.
+     */
+    private void checkpointIfDue()
+    {
+        int now = clock.now();
+        if (journal == null || now - lastCheckpointTick < CHECKPOINT_INTERVAL_TICKS)
+        {
+            return;
+        }
+        lastCheckpointTick = now;
+        clock.reanchor();
+
+        long mark = journal.getAppendedCount();
+        if (mark == checkpointMark)
+        {
+            return;
+        }
+
+        int id = ++checkpointId;
+        ByteBuffer image = KillCheckpoint.capture(id, trackingStore, clock, journaledTaskCreature, journaledTaskAmount);
+        checkpointMark = mark;
+
+        KillJournal target = journal;
+        File directory = dataDirectory;
+        executor.execute(() -> writeCheckpoint(directory, target, id, image, mark));
+    }
+
+    private static void writeCheckpoint(File directory, KillJournal journal, int id, ByteBuffer image, long mark)
+    {
+        try
+        {
+            KillCheckpoint.write(directory, id, image);
+            journal.markCheckpoint(id, mark);
+            KillCheckpoint.deleteBefore(directory, id);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to write checkpoint {}", id, e);
+        }
+    }
+
+    /**
+     * Starts recording the events the tracker sees, beginning with the
+     * settings and game state a replay has to start from.
+     */
+    private void startRecording()
+    {
+        try
+        {
+            recorder = SessionRecorder.create(new File(dataDirectory, "recordings"));
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to start session recording", e);
+            return;
+        }
+
+        recorder.recordConfig("gpTrackingMode", config.gpTrackingMode());
+        recorder.recordConfig("autoTrackSlayerTask", config.autoTrackSlayerTask());
+        recorder.recordConfig("autoTrackLastKilled", config.autoTrackLastKilled());
+        recorder.recordConfig("dataRetentionHours", config.dataRetentionHours());
+        recorder.recordConfig("recentTimeMinutes", config.recentTimeMinutes());
+        recorder.recordConfig("useRecentKphForEstimate", config.useRecentKphForEstimate());
+        recorder.recordConfig("rateMode", config.rateMode());
+        recorder.recordConfig("paceHalfLifeMinutes", config.paceHalfLifeMinutes());
+        recorder.recordConfig("gpPaceHalfLifeMinutes", config.gpPaceHalfLifeMinutes());
+        recorder.recordConfig("showLeaderboard", config.showLeaderboard());
+        recorder.recordConfig("leaderboardSize", config.leaderboardSize());
+        recorder.recordConfig("leaderboardMetric", config.leaderboardMetric());
+        recorder.recordVarp(VarPlayer.SLAYER_TASK_SIZE, client.getVarpValue(VarPlayer.SLAYER_TASK_SIZE));
+        recorder.recordVarp(VarPlayer.SLAYER_TASK_CREATURE, client.getVarpValue(VarPlayer.SLAYER_TASK_CREATURE));
+
+        ItemContainer inventory = client.getItemContainer(InventoryID.INVENTORY);
+        if (client.getLocalPlayer() != null && inventory != null)
+        {
+            recorder.recordInventory(inventory.getItems());
+        }
+        log.debug("Recording session to {}", recorder.getFile());
+    }
+
+    private int lookupPrice(int itemId)
+    {
+        int price = itemManager.getItemPrice(itemId);
+        if (recorder != null)
+        {
+            recorder.recordPrice(itemId, price);
+        }
+        return price;
+    }
+
+    private void replayRecord(int type, int key, long epochMillis, long value, long cutoff)
+    {
+        NpcTrackingData data;
+        switch (type)
+        {
+            case KillJournal.TYPE_KILL:
+                if (epochMillis >= cutoff && key < trackingStore.size())
+                {
+                    trackingStore.getOrCreate(key).replayKill(clock.fromEpochMillis(epochMillis), paceHalfLifeTicks());
+                }
+                break;
+            case KillJournal.TYPE_GP:
+                // GP stays as long as the NPC has kills, as it does while tracking,
+                // so it is not cut off here; NPCs left without kills expire after the replay
+                if (key < trackingStore.size())
+                {
+                    trackingStore.getOrCreate(key).replayGpGain(clock.fromEpochMillis(epochMillis), value, gpPaceHalfLifeTicks());
+                }
+                break;
+            case KillJournal.TYPE_RESET:
+                if (key == KillJournal.ALL_KEYS)
+                {
+                    trackingStore.clear();
+                }
+                else
+                {
+                    data = trackingStore.get(key);
+                    if (data != null)
+                    {
+                        data.reset();
+                    }
+                }
+                break;
+            case KillJournal.TYPE_SLAYER_TASK:
+                journaledTaskCreature = key;
+                journaledTaskAmount = (int) value;
+                break;
+            default:
+                log.debug("Skipping unknown journal record type {}", type);
+        }
+    }
+
+    private void appendJournal(int type, int key, long value)
+    {
+        if (journal != null)
+        {
+            journal.append(type, key, clock.toEpochMillis(clock.now()), value);
         }
     }
 
+    private long retentionCutoffMillis()
+    {
+        return System.currentTimeMillis() - config.dataRetentionHours() * TickClock.TICKS_PER_HOUR * TickClock.TICK_MILLIS;
+    }
+
     private void updateSlayerTask()
     {
         int taskSize = client.getVarpValue(VarPlayer.SLAYER_TASK_SIZE);
@@ -185,129 +751,64 @@ public class NpcKphTrackerPlugin extends Plugin
         
         if (taskSize > 0 && taskCreature > 0)
         {
-            String taskName = getSlayerTaskName(taskCreature);
-            if (taskName != null)
+            String taskName = slayerCreatureTable.getTaskName(taskCreature);
+            if (currentSlayerTask == null || !currentSlayerTask.getTaskName().equals(taskName))
             {
-                if (currentSlayerTask == null || !currentSlayerTask.getTaskName().equals(taskName))
+                if (!slayerCreatureTable.contains(taskCreature))
                 {
-                    // New task detected
-                    currentSlayerTask = new SlayerTaskData(taskName, taskSize, taskSize);
-                    
-                    // Auto-track slayer task if enabled
-                    if (config.autoTrackSlayerTask())
-                    {
-                        currentTrackedNpc = taskName;
-                        isTracking = true;
-                    }
+                    log.debug("Slayer creature {} is not in table v{}", taskCreature, slayerCreatureTable.getVersion());
+                }
+
+                // New task detected. A task already in the journal from before a
+                // restart keeps its original size rather than starting from the remaining count
+                int originalAmount = taskSize;
+                if (taskCreature == journaledTaskCreature && taskSize <= journaledTaskAmount)
+                {
+                    originalAmount = journaledTaskAmount;
                 }
                 else
                 {
-                    // Update existing task
-                    currentSlayerTask.setRemaining(taskSize);
+                    appendJournal(KillJournal.TYPE_SLAYER_TASK, taskCreature, taskSize);
+                }
+                journaledTaskCreature = taskCreature;
+                journaledTaskAmount = originalAmount;
+
+                currentSlayerTask = new SlayerTaskData(taskName, originalAmount, taskSize);
+                slayerTaskMatcher = new SlayerTaskMatcher(slayerCreatureTable, taskCreature);
+                
+                // Auto-track slayer task if enabled
+                if (config.autoTrackSlayerTask())
+                {
+                    setTrackedNpc(taskName);
                 }
             }
+            else
+            {
+                // Update existing task
+                currentSlayerTask.setRemaining(taskSize);
+            }
+            panelPublisher.markDirty();
         }
         else
         {
-            // No active task
+            // No active task. The varps read 0 during login too, so only a task
+            // seen this session counts as finished
+            if (currentSlayerTask != null)
+            {
+                appendJournal(KillJournal.TYPE_SLAYER_TASK, 0, 0);
+                journaledTaskCreature = 0;
+                journaledTaskAmount = 0;
+            }
             currentSlayerTask = null;
+            slayerTaskMatcher = null;
+            panelPublisher.markDirty();
         }
+        updateTimeEstimate();
     }
 
-    private String getSlayerTaskName(int taskCreature)
-    {
-        // Map creature IDs to names - this is a simplified version
-        // In practice, you'd want a more comprehensive mapping
-        switch (taskCreature)
-        {
-            case 1: return "Crawling Hands";
-            case 2: return "Cave bugs";
-            case 3: return "Cave crawlers";
-            case 4: return "Banshees";
-            case 5: return "Cave slimes";
-            case 6: return "Rock slugs";
-            case 7: return "Desert lizards";
-            case 8: return "Cockatrices";
-            case 9: return "Pyrefiends";
-            case 10: return "Mogres";
-            case 11: return "Harpie bug swarms";
-            case 12: return "Wall beasts";
-            case 13: return "Killerwatts";
-            case 14: return "Molanisks";
-            case 15: return "Basilisks";
-            case 16: return "Sea snakes";
-            case 17: return "Turoth";
-            case 18: return "Fever spiders";
-            case 19: return "Infernal mages";
-            case 20: return "Brine rats";
-            case 21: return "Bloodvelds";
-            case 22: return "Jellies";
-            case 23: return "Spiritual rangers";
-            case 24: return "Spiritual warriors";
-            case 25: return "Dust devils";
-            case 26: return "Aberrant spectres";
-            case 27: return "Spiritual mages";
-            case 28: return "Kurasks";
-            case 29: return "Skeletal wyverns";
-            case 30: return "Gargoyles";
-            case 31: return "Nechryaels";
-            case 32: return "Abyssal demons";
-            case 33: return "Cave krakens";
-            case 34: return "Dark beasts";
-            case 35: return "Smoke devils";
-            case 36: return "Drakes";
-            case 37: return "Wyrms";
-            case 38: return "Hydras";
-            // Add more mappings as needed
-            default: return "Unknown Task";
-        }
-    }
-
-    private boolean isSlayerTaskNpc(String npcName)
-    {
-        if (currentSlayerTask == null || npcName == null)
-        {
-            return false;
-        }
-        
-        String taskName = currentSlayerTask.getTaskName().toLowerCase();
-        String npcLower = npcName.toLowerCase();
-        
-        // Simple name matching - could be improved with more sophisticated logic
-        return npcLower.contains(taskName.toLowerCase()) || 
-               taskName.contains(npcLower) ||
-               isAlternativeTaskName(taskName, npcLower);
-    }
-
-    private boolean isAlternativeTaskName(String taskName, String npcName)
-    {
-        // Handle alternative names for slayer tasks
-        Map<String, String[]> alternatives = Map.of(
-            "bloodvelds", new String[]{"bloodveld", "mutated bloodveld"},
-            "gargoyles", new String[]{"gargoyle", "grotesque guardians"},
-            "abyssal demons", new String[]{"abyssal demon", "greater abyssal demon"},
-            "dust devils", new String[]{"dust devil", "choke devil"},
-            "nechryaels", new String[]{"nechryael", "greater nechryael"},
-            "cave krakens", new String[]{"cave kraken", "kraken"},
-            "smoke devils", new String[]{"smoke devil", "thermonuclear smoke devil"},
-            "drakes", new String[]{"drake"},
-            "wyrms", new String[]{"wyrm"},
-            "hydras", new String[]{"hydra", "alchemical hydra"}
-        );
-
-        String[] alts = alternatives.get(taskName.toLowerCase());
-        if (alts != null)
-        {
-            for (String alt : alts)
-            {
-                if (npcName.contains(alt))
-                {
-                    return true;
-                }
-            }
-        }
-        
-        return false;
+    private boolean isSlayerTaskNpc(NPC npc)
+    {
+        return slayerTaskMatcher != null && slayerTaskMatcher.matches(npc.getId(), npc.getName());
     }
 
     private boolean wasPlayerInCombatWith(NPC npc)
@@ -330,42 +831,125 @@ public class NpcKphTrackerPlugin extends Plugin
         return playerInteracting == npc;
     }
 
+    /**
+     * Expires kills that have fallen out of the retention window. Only NPCs
+     * whose oldest bucket is due this tick are visited.
+     */
     private void cleanupOldData()
     {
-        if (client.getTickCount() % 100 != 0) // Only run every 100 ticks
+        long start = timings.start(HandlerTimings.Handler.CLEANUP);
+        expiryWheel.advance(clock.now(), expireNpc);
+        timings.stop(HandlerTimings.Handler.CLEANUP, start);
+    }
+
+    private void expireNpc(int key)
+    {
+        NpcTrackingData data = trackingStore.get(key);
+        if (data == null)
         {
             return;
         }
 
-        Instant cutoff = Instant.now().minus(config.dataRetentionHours(), ChronoUnit.HOURS);
-        
-        npcTrackingMap.values().forEach(data -> data.removeOldKills(cutoff));
-        npcTrackingMap.entrySet().removeIf(entry -> entry.getValue().getKillCount() == 0);
+        data.removeOldKills(clock.now() - retentionTicks());
+        if (data.getKillCount() == 0)
+        {
+            trackingStore.remove(key);
+            leaderboard.remove(key);
+            panelPublisher.markDirty();
+            return;
+        }
+        scheduleExpiry(key, data);
+    }
+
+    /**
+     * Schedules an NPC for when its oldest bucket leaves the retention
+     * window, or for the next tick when it has no kills left.
+     */
+    private void scheduleExpiry(int key, NpcTrackingData data)
+    {
+        int oldest = data.getOldestBucketEndTick();
+        expiryWheel.schedule(key, oldest == NpcTrackingData.NO_KILL ? clock.now() : oldest + retentionTicks());
     }
 
+    private void scheduleAllExpiries()
+    {
+        expiryWheel.clear();
+        for (int key = 0; key < trackingStore.size(); key++)
+        {
+            NpcTrackingData data = trackingStore.get(key);
+            if (data != null)
+            {
+                scheduleExpiry(key, data);
+            }
+        }
+    }
+
+    private int retentionTicks()
+    {
+        return config.dataRetentionHours() * TickClock.TICKS_PER_HOUR;
+    }
+
+    private int paceHalfLifeTicks()
+    {
+        return config.paceHalfLifeMinutes() * TickClock.TICKS_PER_MINUTE;
+    }
+
+    private int gpPaceHalfLifeTicks()
+    {
+        return config.gpPaceHalfLifeMinutes() * TickClock.TICKS_PER_MINUTE;
+    }
+
+    // The methods below may be called from the panel; tracking state is only
+    // ever changed on the client thread, so they hand the work over to it
+
     public void resetTracking()
     {
-        if (currentTrackedNpc != null)
+        clientThread.invoke(() ->
         {
-            NpcTrackingData data = npcTrackingMap.get(currentTrackedNpc);
+            NpcTrackingData data = getCurrentTrackedData();
             if (data != null)
             {
                 data.reset();
+                appendJournal(KillJournal.TYPE_RESET, currentTrackedKey, 0);
+                scheduleExpiry(currentTrackedKey, data);
             }
-        }
+            onTrackingChanged();
+        });
     }
 
     public void resetAllTracking()
     {
-        npcTrackingMap.clear();
-        currentTrackedNpc = null;
-        isTracking = false;
+        clientThread.invoke(() ->
+        {
+            trackingStore.clear();
+            leaderboard.clear();
+            expiryWheel.clear();
+            appendJournal(KillJournal.TYPE_RESET, KillJournal.ALL_KEYS, 0);
+            currentTrackedNpc = null;
+            currentTrackedKey = NpcTrackingStore.NO_KEY;
+            isTracking = false;
+            onTrackingChanged();
+        });
     }
 
     public void setTrackedNpc(String npcName)
     {
-        currentTrackedNpc = npcName;
-        isTracking = npcName != null;
+        clientThread.invoke(() ->
+        {
+            currentTrackedNpc = npcName;
+            currentTrackedKey = npcName != null ? trackingStore.keyOf(npcName) : NpcTrackingStore.NO_KEY;
+            isTracking = npcName != null;
+            onTrackingChanged();
+        });
+    }
+
+    private void onTrackingChanged()
+    {
+        // The tracked NPC is highlighted on the leaderboard
+        leaderboardBuiltAt = -1;
+        updateTimeEstimate();
+        publishSnapshots();
+        panel.updatePanel();
     }
 
     public String getCurrentTrackedNpc()
@@ -378,62 +962,138 @@ public class NpcKphTrackerPlugin extends Plugin
         return isTracking && currentTrackedNpc != null;
     }
 
-    public NpcTrackingData getTrackingData(String npcName)
+    /**
+     * Last published stats for an NPC, or null if it has none.
+     */
+    public NpcStats getTrackingStats(String npcName)
     {
-        return npcTrackingMap.get(npcName);
+        return trackingStore.getStats(trackingStore.keyOf(npcName));
     }
 
-    public SlayerTaskData getCurrentSlayerTask()
+    /**
+     * Last published stats for the current NPC; empty when nothing is tracked.
+     */
+    public NpcStats getCurrentTrackedStats()
     {
-        return currentSlayerTask;
+        return trackedStats;
     }
 
-    public String getEstimatedTimeRemaining()
+    /**
+     * Tracking data for the current NPC. A name chosen before its first kill
+     * (such as a slayer task) is resolved to a key once that NPC is seen.
+     * Client thread only.
+     */
+    NpcTrackingData getCurrentTrackedData()
     {
-        if (currentSlayerTask == null || !isTracking())
+        if (currentTrackedNpc == null)
         {
             return null;
         }
 
-        NpcTrackingData data = getTrackingData(currentTrackedNpc);
-        if (data == null)
+        if (currentTrackedKey == NpcTrackingStore.NO_KEY)
         {
-            return null;
+            currentTrackedKey = trackingStore.keyOf(currentTrackedNpc);
         }
+        return trackingStore.get(currentTrackedKey);
+    }
 
-        double kph = config.useRecentKphForEstimate() ? 
-            data.getRecentKillsPerHour(config.recentTimeMinutes()) : 
-            data.getKillsPerHour();
+    OverlayViewModel getOverlayViewModel()
+    {
+        return overlayViewModel;
+    }
 
-        if (kph <= 0)
-        {
-            return null;
-        }
+    HandlerTimings getTimings()
+    {
+        return timings;
+    }
 
-        int remaining = currentSlayerTask.getRemaining();
-        double hoursRemaining = remaining / kph;
-        
-        return formatEstimatedTime(hoursRemaining);
+    public ItemPriceCache getPriceCache()
+    {
+        return priceCache;
+    }
+
+    public SlayerTaskData getCurrentSlayerTask()
+    {
+        return currentSlayerTask;
+    }
+
+    /**
+     * Slayer task time estimate with its 80% interval, as last forecast on
+     * the client thread; null while there is nothing to base it on.
+     */
+    public String getEstimatedTimeRemaining()
+    {
+        return estimatedTimeRemaining;
+    }
+
+    /**
+     * Forecasts the tracked NPC's remaining slayer kills. Runs on the client
+     * thread after each kill and whenever the task, the tracked NPC or the
+     * config changes, so readers only ever see the cached text.
+     */
+    private void updateTimeEstimate()
+    {
+        SlayerTaskData slayerTask = currentSlayerTask;
+        NpcTrackingData data = getCurrentTrackedData();
+        KillForecast.Estimate estimate = slayerTask == null || !isTracking() || data == null ? null
+            : data.getForecast().estimate(slayerTask.getRemaining(), config.useRecentKphForEstimate());
+
+        estimatedTimeRemaining = estimate == null ? null
+            : formatEstimatedTime(estimate.getTicks()) + " (" + formatEstimatedTime(estimate.getLowTicks())
+                + " - " + formatEstimatedTime(estimate.getHighTicks()) + ")";
     }
 
-    private String formatEstimatedTime(double hours)
+    private String formatEstimatedTime(long ticks)
     {
-        if (hours < 1)
+        long minutes = Math.round(ticks / (double) TickClock.TICKS_PER_MINUTE);
+        if (minutes < 60)
         {
-            int minutes = (int) Math.round(hours * 60);
             return minutes + "m";
         }
         else
         {
-            int wholeHours = (int) hours;
-            int minutes = (int) Math.round((hours - wholeHours) * 60);
-            return wholeHours + "h " + minutes + "m";
+            return (minutes / 60) + "h " + (minutes % 60) + "m";
         }
     }
 
-    public Map<String, NpcTrackingData> getAllTrackingData()
+    /**
+     * Exports the journaled history on a thread of its own, so a long export
+     * does not hold up the journal's flushes on the shared executor, then
+     * reports the outcome to the callback on the EDT.
+     */
+    public void exportHistory(File file, HistoryExport.Format format, Consumer<String> onDone)
     {
-        return new HashMap<>(npcTrackingMap);
+        KillJournal source = journal;
+        if (source == null)
+        {
+            onDone.accept("History is not being recorded");
+            return;
+        }
+
+        Thread export = new Thread(() ->
+        {
+            String message;
+            try
+            {
+                int rows = HistoryExport.export(source, trackingStore, file, format);
+                message = "Exported " + rows + " rows";
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to export history to {}", file, e);
+                message = "Export failed: " + e.getMessage();
+            }
+
+            String result = message;
+            SwingUtilities.invokeLater(() -> onDone.accept(result));
+        }, "npc-kph-export");
+        export.setDaemon(true);
+        export.start();
+    }
+
+    public NpcTrackingView getTrackingView()
+    {
+        return trackingStore;
     }
 
     @Provides
@@ -448,7 +1108,7 @@ class SlayerTaskData
 {
     private final String taskName;
     private final int originalAmount;
-    private int remaining;
+    private volatile int remaining;
 
     public SlayerTaskData(String taskName, int originalAmount, int remaining)
     {
@@ -502,113 +1162,256 @@ class SlayerTaskData
 
 // Supporting classes
 
+/**
+ * Kill and GP history for one NPC. Mutated only on the client thread; other
+ * threads read the immutable {@link NpcStats} last handed out by
+ * {@link #publish(int, int, int, int, boolean)}.
+ */
 class NpcTrackingData
 {
-    private final Map<Instant, Integer> killTimestamps = new ConcurrentHashMap<>();
-    private int totalKills = 0;
+    static final int NO_KILL = Integer.MIN_VALUE;
+
+    private final KillTimeline killTimeline = new KillTimeline();
+    private final RateEstimator killPace = new RateEstimator();
+    private final RateEstimator gpPace = new RateEstimator();
+    private final KillForecast forecast = new KillForecast();
+    private final KillGapHistogram gaps = new KillGapHistogram();
+    private final int[] breakdownCounts = new int[NpcStats.BREAKDOWN_WINDOWS.length];
+    private final int[] gapTicks = new int[NpcStats.GAP_PERCENTILES.length];
     private long totalGpGained = 0;
-    private Instant firstKill;
-    private Instant lastKill;
+    private int firstKillTick = NO_KILL;
+    private int lastKillTick = NO_KILL;
+    // Kills and GP added live, which the session rates are taken over
+    private int sessionKillCount;
+    private long sessionGpGained;
+    private int sessionFirstKillTick = NO_KILL;
+    // Set by every mutation, cleared when a snapshot is published
+    private boolean dirty = true;
+    private volatile NpcStats stats = NpcStats.EMPTY;
+    // Timeline restored from a checkpoint but not read in yet
+    private KillCheckpoint.Entry deferred;
+    private int deferredKillCount;
+
+    public void addKill(int tick, int paceHalfLifeTicks)
+    {
+        addKill(tick, paceHalfLifeTicks, true);
+    }
 
-    public void addKill(Instant timestamp)
+    /**
+     * Adds a kill read back from the journal at startup. It counts towards
+     * the totals and paces but not the forecast, the gaps between kills or
+     * the session rates, which would take in the time the client was closed.
+     */
+    void replayKill(int tick, int paceHalfLifeTicks)
     {
-        killTimestamps.merge(timestamp.truncatedTo(ChronoUnit.MINUTES), 1, Integer::sum);
-        totalKills++;
-        
-        if (firstKill == null || timestamp.isBefore(firstKill))
+        addKill(tick, paceHalfLifeTicks, false);
+    }
+
+    private void addKill(int tick, int paceHalfLifeTicks, boolean live)
+    {
+        inflate();
+        killTimeline.add(tick);
+        // The first kill only starts the clock, as for the total KPH
+        if (killPace.isStarted())
         {
-            firstKill = timestamp;
+            killPace.add(tick, 1, paceHalfLifeTicks);
         }
-        
-        if (lastKill == null || timestamp.isAfter(lastKill))
+        else
         {
-            lastKill = timestamp;
+            killPace.start(tick);
         }
+        gpPace.start(tick);
+        if (live)
+        {
+            forecast.onKill(tick, paceHalfLifeTicks);
+            gaps.onKill(tick);
+            sessionKillCount++;
+            if (sessionFirstKillTick == NO_KILL || tick < sessionFirstKillTick)
+            {
+                sessionFirstKillTick = tick;
+            }
+        }
+
+        if (firstKillTick == NO_KILL || tick < firstKillTick)
+        {
+            firstKillTick = tick;
+        }
+
+        if (lastKillTick == NO_KILL || tick > lastKillTick)
+        {
+            lastKillTick = tick;
+        }
+        dirty = true;
     }
 
-    public void addGpGain(int gpAmount)
+    public void addGpGain(int tick, long gpAmount, int paceHalfLifeTicks)
     {
-        totalGpGained += gpAmount;
+        addGpGain(tick, gpAmount, paceHalfLifeTicks, true);
     }
 
-    public void removeOldKills(Instant cutoff)
+    /**
+     * Adds GP read back from the journal at startup. It counts towards the
+     * total and the pace but not the session GP per hour.
+     */
+    void replayGpGain(int tick, long gpAmount, int paceHalfLifeTicks)
     {
-        killTimestamps.entrySet().removeIf(entry -> entry.getKey().isBefore(cutoff));
-        recalculateTotals();
+        addGpGain(tick, gpAmount, paceHalfLifeTicks, false);
     }
 
-    private void recalculateTotals()
+    private void addGpGain(int tick, long gpAmount, int paceHalfLifeTicks, boolean live)
     {
-        totalKills = killTimestamps.values().stream().mapToInt(Integer::intValue).sum();
-        
-        if (killTimestamps.isEmpty())
-        {
-            firstKill = null;
-            lastKill = null;
-        }
-        else
+        totalGpGained += gpAmount;
+        gpPace.add(tick, gpAmount, paceHalfLifeTicks);
+        if (live)
         {
-            firstKill = killTimestamps.keySet().stream().min(Instant::compareTo).orElse(null);
-            lastKill = killTimestamps.keySet().stream().max(Instant::compareTo).orElse(null);
+            sessionGpGained += gpAmount;
         }
+        dirty = true;
     }
 
-    public double getKillsPerHour()
+    public void removeOldKills(int cutoffTick)
     {
-        if (totalKills == 0 || firstKill == null || lastKill == null)
+        if (deferred != null)
         {
-            return 0.0;
+            if (firstKillTick >= cutoffTick)
+            {
+                return;
+            }
+            if (lastKillTick < cutoffTick)
+            {
+                // Everything has expired, so there is nothing worth reading in
+                deferred = null;
+                deferredKillCount = 0;
+            }
+            inflate();
         }
 
-        long minutes = ChronoUnit.MINUTES.between(firstKill, lastKill);
-        if (minutes == 0)
+        killTimeline.expireBefore(cutoffTick);
+
+        if (killTimeline.isEmpty())
         {
-            return 0.0;
+            firstKillTick = NO_KILL;
+            lastKillTick = NO_KILL;
         }
-
-        return (totalKills / (minutes / 60.0));
+        else
+        {
+            // The timeline head is the oldest surviving bucket
+            firstKillTick = Math.max(firstKillTick, killTimeline.getFirstBucketTick());
+        }
+        dirty = true;
     }
 
-    public double getRecentKillsPerHour(int minutes)
+    /**
+     * Tick at which a retention cutoff starts expiring this NPC's oldest
+     * kills, or {@link #NO_KILL} when it has none. While the timeline is still
+     * in the checkpoint this is the end of the first kill's minute.
+     */
+    int getOldestBucketEndTick()
     {
-        Instant cutoff = Instant.now().minus(minutes, ChronoUnit.MINUTES);
-        int recentKills = killTimestamps.entrySet().stream()
-            .filter(entry -> entry.getKey().isAfter(cutoff))
-            .mapToInt(Map.Entry::getValue)
-            .sum();
-
-        if (recentKills == 0)
+        if (deferred != null)
         {
-            return 0.0;
+            return (KillTimeline.bucketOf(firstKillTick) + 1) * KillTimeline.BUCKET_TICKS;
         }
-
-        return (recentKills / (minutes / 60.0));
+        return killTimeline.isEmpty() ? NO_KILL : killTimeline.getFirstBucketEndTick();
     }
 
-    public double getGpPerHour()
+    /**
+     * Publishes a fresh snapshot if anything changed since the last one or
+     * the recent window has moved on by a bucket. Unchanged data keeps its
+     * existing snapshot, so idle NPCs cost nothing per tick; {@code live}
+     * republishes anyway so the tracked NPC's session time keeps counting.
+     */
+    NpcStats publish(int now, int recentMinutes, int paceHalfLifeTicks, int gpPaceHalfLifeTicks, boolean live)
     {
-        if (totalGpGained == 0 || firstKill == null || lastKill == null)
+        NpcStats current = stats;
+        if (deferred != null && !live)
         {
-            return 0.0;
+            // The restored totals stand in until someone looks at this NPC
+            return current;
         }
 
-        long minutes = ChronoUnit.MINUTES.between(firstKill, lastKill);
-        if (minutes == 0)
+        inflate();
+        if (!dirty && !live
+            && current.getRecentMinutes() == recentMinutes
+            && KillTimeline.bucketOf(current.getCapturedTick()) == KillTimeline.bucketOf(now))
         {
-            return 0.0;
+            return current;
         }
 
-        return (totalGpGained / (minutes / 60.0));
+        // Fold buckets that have aged out of their tier while no kills came in
+        killTimeline.advanceTo(now);
+        int recentKills = killTimeline.countSince(now - recentMinutes * TickClock.TICKS_PER_MINUTE);
+        killTimeline.countSince(now, NpcStats.BREAKDOWN_WINDOWS, breakdownCounts);
+        gaps.percentiles(NpcStats.GAP_PERCENTILES, gapTicks);
+
+        // Expiry takes the oldest kills first, so restored kills go before this session's
+        int killCount = killTimeline.getTotal();
+        NpcStats published = new NpcStats(killCount, totalGpGained, firstKillTick, lastKillTick,
+            Math.min(sessionKillCount, killCount), sessionGpGained, Math.max(sessionFirstKillTick, firstKillTick), now, recentMinutes, recentKills, breakdownCounts.clone(),
+            killPace.getRatePerHour(now, paceHalfLifeTicks), gpPace.getRatePerHour(now, gpPaceHalfLifeTicks),
+            gapTicks.clone(), gaps.getMax());
+        stats = published;
+        dirty = false;
+        return published;
+    }
+
+    /**
+     * Sets the totals restored from a checkpoint. The kill timeline stays in
+     * the checkpoint until this NPC is tracked, killed or expired.
+     */
+    void restore(int killCount, long totalGpGained, int firstKillTick, int lastKillTick, int now, KillCheckpoint.Entry detail)
+    {
+        killTimeline.clear();
+        this.totalGpGained = totalGpGained;
+        this.firstKillTick = firstKillTick;
+        this.lastKillTick = lastKillTick;
+        deferred = detail;
+        deferredKillCount = killCount;
+        stats = new NpcStats(killCount, totalGpGained, firstKillTick, lastKillTick, 0, 0, NO_KILL,
+            now, 0, 0, new int[NpcStats.BREAKDOWN_WINDOWS.length], 0, 0, new int[NpcStats.GAP_PERCENTILES.length], 0);
+        dirty = false;
+    }
+
+    KillForecast getForecast()
+    {
+        return forecast;
+    }
+
+    /**
+     * The checkpoint entry still holding this NPC's timeline, or null once
+     * it has been read in.
+     */
+    KillCheckpoint.Entry getDeferredDetail()
+    {
+        return deferred;
+    }
+
+    /**
+     * The kill timeline, which is empty while {@link #getDeferredDetail()}
+     * is set.
+     */
+    KillTimeline getTimeline()
+    {
+        return killTimeline;
     }
 
-    public double getAverageGpPerKill()
+    private void inflate()
     {
-        if (totalKills == 0)
+        if (deferred != null)
         {
-            return 0.0;
+            deferred.inflate(killTimeline);
+            deferred = null;
+            deferredKillCount = 0;
+            dirty = true;
         }
-        
-        return (double) totalGpGained / totalKills;
+    }
+
+    /**
+     * Last published snapshot. Safe to call from any thread.
+     */
+    NpcStats getStats()
+    {
+        return stats;
     }
 
     public long getTotalGpGained()
@@ -618,25 +1421,34 @@ class NpcTrackingData
 
     public int getKillCount()
     {
-        return totalKills;
+        return deferred != null ? deferredKillCount : killTimeline.getTotal();
     }
 
-    public Instant getFirstKill()
+    public int getFirstKillTick()
     {
-        return firstKill;
+        return firstKillTick;
     }
 
-    public Instant getLastKill()
+    public int getLastKillTick()
     {
-        return lastKill;
+        return lastKillTick;
     }
 
     public void reset()
     {
-        killTimestamps.clear();
-        totalKills = 0;
+        deferred = null;
+        deferredKillCount = 0;
+        killTimeline.clear();
+        killPace.reset();
+        gpPace.reset();
+        forecast.reset();
+        gaps.reset();
         totalGpGained = 0;
-        firstKill = null;
-        lastKill = null;
+        firstKillTick = NO_KILL;
+        lastKillTick = NO_KILL;
+        sessionKillCount = 0;
+        sessionGpGained = 0;
+        sessionFirstKillTick = NO_KILL;
+        dirty = true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package com.npckphtracker;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class KillCheckpointTest
+{
+    private static final int HALF_LIFE_TICKS = 10 * TickClock.TICKS_PER_MINUTE;
+    private static final int SLAYER_CREATURE = 42;
+    private static final int SLAYER_AMOUNT = 150;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Stopped at tick 0 on a whole second, so journal times round trip exactly
+    private final TickClock clock = new TickClock(() -> 0L, System.currentTimeMillis() / 1000 * 1000);
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() throws Exception
+    {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void restoresCheckpointAndJournalTail() throws Exception
+    {
+        File directory = folder.newFolder();
+        NpcTrackingStore store = new NpcTrackingStore();
+        int demons = store.intern("Abyssal demon");
+        int goblins = store.intern("Goblin");
+
+        KillJournal journal = open(directory, store);
+        // An hour of demons every 50 ticks and a goblin every 500
+        for (int tick = 0; tick < TickClock.TICKS_PER_HOUR; tick += 50)
+        {
+            kill(store, journal, demons, tick, 1_000);
+            if (tick % 500 == 0)
+            {
+                kill(store, journal, goblins, tick, 0);
+            }
+        }
+        checkpoint(directory, store, journal, 1);
+
+        // Ten more demons after the checkpoint
+        for (int tick = TickClock.TICKS_PER_HOUR; tick < TickClock.TICKS_PER_HOUR + 500; tick += 50)
+        {
+            kill(store, journal, demons, tick, 1_000);
+        }
+        journal.close();
+
+        NpcTrackingStore restored = new NpcTrackingStore();
+        journal = open(directory, restored);
+        assertNull(KillCheckpoint.open(directory, journal.getCheckpointId() + 1));
+        KillCheckpoint checkpoint = KillCheckpoint.open(directory, journal.getCheckpointId());
+        assertNotNull(checkpoint);
+        assertEquals(2, checkpoint.restore(restored, clock));
+        assertEquals(SLAYER_CREATURE, checkpoint.getSlayerCreature());
+        assertEquals(SLAYER_AMOUNT, checkpoint.getSlayerAmount());
+
+        // The checkpoint alone has the first hour, without reading the timelines in
+        NpcTrackingData restoredDemons = restored.get(demons);
+        assertNotNull(restoredDemons.getDeferredDetail());
+        assertEquals(120, restoredDemons.getKillCount());
+        assertEquals(120_000, restoredDemons.getTotalGpGained());
+
+        replayTail(journal, restored);
+        journal.close();
+        assertTotals(store, restored, demons);
+        assertTotals(store, restored, goblins);
+        assertEquals(130, restoredDemons.getTimeline().getTotal());
+        assertEquals(10, restoredDemons.getTimeline().countSince(TickClock.TICKS_PER_HOUR));
+    }
+
+    @Test
+    public void carriesUnreadTimelinesIntoTheNextCheckpoint() throws Exception
+    {
+        File directory = folder.newFolder();
+        NpcTrackingStore store = new NpcTrackingStore();
+        int demons = store.intern("Abyssal demon");
+
+        KillJournal journal = open(directory, store);
+        for (int tick = 0; tick < 3 * TickClock.TICKS_PER_HOUR; tick += 100)
+        {
+            kill(store, journal, demons, tick, 500);
+        }
+        checkpoint(directory, store, journal, 1);
+        journal.close();
+
+        // Checkpoint again straight after restoring, while the timeline is still in the file
+        NpcTrackingStore carried = new NpcTrackingStore();
+        journal = open(directory, carried);
+        KillCheckpoint.open(directory, journal.getCheckpointId()).restore(carried, clock);
+        assertNotNull(carried.get(demons).getDeferredDetail());
+        checkpoint(directory, carried, journal, 2);
+        journal.close();
+
+        NpcTrackingStore restored = new NpcTrackingStore();
+        journal = open(directory, restored);
+        KillCheckpoint.open(directory, journal.getCheckpointId()).restore(restored, clock);
+        replayTail(journal, restored);
+        journal.close();
+        assertTotals(store, restored, demons);
+        // Publishing it as the tracked NPC reads the timeline in from the last checkpoint
+        store.get(demons).publish(3 * TickClock.TICKS_PER_HOUR, 60, HALF_LIFE_TICKS, HALF_LIFE_TICKS, true);
+        restored.get(demons).publish(3 * TickClock.TICKS_PER_HOUR, 60, HALF_LIFE_TICKS, HALF_LIFE_TICKS, true);
+        KillTimeline expected = store.get(demons).getTimeline();
+        KillTimeline actual = restored.get(demons).getTimeline();
+        assertEquals(expected.getBucketCount(), actual.getBucketCount());
+        assertEquals(expected.countSince(TickClock.TICKS_PER_HOUR), actual.countSince(TickClock.TICKS_PER_HOUR));
+    }
+
+    private void kill(NpcTrackingStore store, KillJournal journal, int key, int tick, long gp)
+    {
+        NpcTrackingData data = store.getOrCreate(key);
+        data.addKill(tick, HALF_LIFE_TICKS);
+        journal.append(KillJournal.TYPE_KILL, key, clock.toEpochMillis(tick), 0);
+        if (gp > 0)
+        {
+            data.addGpGain(tick, gp, HALF_LIFE_TICKS);
+            journal.append(KillJournal.TYPE_GP, key, clock.toEpochMillis(tick), gp);
+        }
+    }
+
+    private void checkpoint(File directory, NpcTrackingStore store, KillJournal journal, int id) throws Exception
+    {
+        long mark = journal.getAppendedCount();
+        KillCheckpoint.write(directory, id, KillCheckpoint.capture(id, store, clock, SLAYER_CREATURE, SLAYER_AMOUNT));
+        journal.markCheckpoint(id, mark);
+    }
+
+    /**
+     * Opens the journal for a store, interning its names first as startup does.
+     */
+    private KillJournal open(File directory, NpcTrackingStore store) throws Exception
+    {
+        KillJournal journal = KillJournal.open(directory);
+        for (String name : journal.getNames())
+        {
+            store.intern(name);
+        }
+        journal.start(executor, store, () -> 0L);
+        return journal;
+    }
+
+    private void replayTail(KillJournal journal, NpcTrackingStore store)
+    {
+        journal.replay(journal.getCheckpointOffset(), (type, key, epochMillis, value) ->
+        {
+            if (type == KillJournal.TYPE_KILL)
+            {
+                store.getOrCreate(key).replayKill(clock.fromEpochMillis(epochMillis), HALF_LIFE_TICKS);
+            }
+            else if (type == KillJournal.TYPE_GP)
+            {
+                store.getOrCreate(key).replayGpGain(clock.fromEpochMillis(epochMillis), value, HALF_LIFE_TICKS);
+            }
+        });
+    }
+
+    private static void assertTotals(NpcTrackingStore expected, NpcTrackingStore actual, int key)
+    {
+        assertEquals(expected.get(key).getKillCount(), actual.get(key).getKillCount());
+        assertEquals(expected.get(key).getTotalGpGained(), actual.get(key).getTotalGpGained());
+        assertEquals(expected.get(key).getFirstKillTick(), actual.get(key).getFirstKillTick());
+        assertEquals(expected.get(key).getLastKillTick(), actual.get(key).getLastKillTick());
+    }
+}
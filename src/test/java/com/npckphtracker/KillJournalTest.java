@@ -0,0 +1,237 @@
+package com.npckphtracker;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KillJournalTest
+{
+    // Header of two records: magic, version, base second, end offset, checkpoint id and offset
+    private static final int HEADER_BYTES = 2 * KillJournal.RECORD_BYTES;
+    private static final int END_OFFSET_POSITION = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Records are kept to the second, so the test works in whole seconds from now
+    private final long base = System.currentTimeMillis() / 1000 * 1000;
+
+    @Test
+    public void replaysRecordsAfterReopening() throws Exception
+    {
+        File directory = folder.newFolder();
+        NpcTrackingStore store = new NpcTrackingStore();
+        store.intern("Abyssal demon");
+        store.intern("Goblin");
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        KillJournal journal = KillJournal.open(directory);
+        journal.start(executor, store, () -> 0L);
+        journal.append(KillJournal.TYPE_KILL, 0, base + 1_000, 0);
+        journal.append(KillJournal.TYPE_GP, 0, base + 1_000, 5_000);
+        journal.append(KillJournal.TYPE_KILL, 1, base + 2_000, 0);
+        journal.append(KillJournal.TYPE_SLAYER_TASK, 42, base + 3_000, 150);
+        journal.append(KillJournal.TYPE_RESET, KillJournal.ALL_KEYS, base + 4_000, 0);
+        journal.close();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        journal = KillJournal.open(directory);
+        assertEquals(Arrays.asList("Abyssal demon", "Goblin"), journal.getNames());
+        assertEquals(Arrays.asList(
+            record(KillJournal.TYPE_KILL, 0, base + 1_000, 0),
+            record(KillJournal.TYPE_GP, 0, base + 1_000, 5_000),
+            record(KillJournal.TYPE_KILL, 1, base + 2_000, 0),
+            record(KillJournal.TYPE_SLAYER_TASK, 42, base + 3_000, 150),
+            record(KillJournal.TYPE_RESET, KillJournal.ALL_KEYS, base + 4_000, 0)), replay(journal, HEADER_BYTES));
+
+        // Appending after a reopen carries on from the end
+        journal.append(KillJournal.TYPE_KILL, 1, base + 5_000, 0);
+        journal.close();
+        journal = KillJournal.open(directory);
+        List<String> records = replay(journal, HEADER_BYTES);
+        assertEquals(6, records.size());
+        assertEquals(record(KillJournal.TYPE_KILL, 1, base + 5_000, 0), records.get(5));
+        journal.close();
+    }
+
+    @Test
+    public void recoversFlushedRecordsAndStopsAtTornRecord() throws Exception
+    {
+        File directory = folder.newFolder();
+        KillJournal journal = KillJournal.open(directory);
+        for (int i = 1; i <= 3; i++)
+        {
+            journal.append(KillJournal.TYPE_KILL, 0, base + i * 1_000, 0);
+        }
+        journal.close();
+
+        try (FileChannel channel = FileChannel.open(new File(directory, "journal.0.bin").toPath(), StandardOpenOption.WRITE))
+        {
+            // As if the client died after flushing the records but before storing the end offset
+            ByteBuffer endOffset = ByteBuffer.allocate(8).putLong(0, HEADER_BYTES + KillJournal.RECORD_BYTES);
+            channel.write(endOffset, END_OFFSET_POSITION);
+
+            // and part way through the next record, before its type was written
+            ByteBuffer torn = ByteBuffer.allocate(KillJournal.RECORD_BYTES).putInt(0, 4).putLong(8, 1_234);
+            channel.write(torn, HEADER_BYTES + 3 * KillJournal.RECORD_BYTES);
+        }
+
+        journal = KillJournal.open(directory);
+        assertEquals(3, replay(journal, HEADER_BYTES).size());
+
+        // The next record goes where the torn one was
+        journal.append(KillJournal.TYPE_GP, 0, base + 5_000, 900);
+        journal.close();
+        journal = KillJournal.open(directory);
+        List<String> records = replay(journal, HEADER_BYTES);
+        assertEquals(4, records.size());
+        assertEquals(record(KillJournal.TYPE_GP, 0, base + 5_000, 900), records.get(3));
+        journal.close();
+    }
+
+    @Test
+    public void compactionKeepsCheckpointOffsetOnTheSameRecord() throws Exception
+    {
+        File directory = folder.newFolder();
+        long cutoff = base + 60_000;
+        KillJournal journal = KillJournal.open(directory);
+        journal.append(KillJournal.TYPE_KILL, 0, base + 1_000, 0);
+        journal.append(KillJournal.TYPE_KILL, 0, base + 2_000, 0);
+        journal.append(KillJournal.TYPE_SLAYER_TASK, 42, base + 3_000, 150);
+        journal.append(KillJournal.TYPE_KILL, 0, base + 120_000, 0);
+        long mark = journal.getAppendedCount();
+        journal.append(KillJournal.TYPE_KILL, 0, base + 121_000, 0);
+        journal.append(KillJournal.TYPE_KILL, 0, base + 122_000, 0);
+        // Both records after the mark are flushed along with it
+        journal.markCheckpoint(1, mark);
+        assertEquals(HEADER_BYTES + 4 * KillJournal.RECORD_BYTES, journal.getCheckpointOffset());
+
+        journal.compact(cutoff);
+
+        // The old kills go; the last slayer task stays however old it is
+        List<String> tail = Arrays.asList(
+            record(KillJournal.TYPE_KILL, 0, base + 121_000, 0),
+            record(KillJournal.TYPE_KILL, 0, base + 122_000, 0));
+        assertEquals(1, journal.getCheckpointId());
+        assertEquals(HEADER_BYTES + 2 * KillJournal.RECORD_BYTES, journal.getCheckpointOffset());
+        assertEquals(tail, replay(journal, journal.getCheckpointOffset()));
+        assertEquals(4, replay(journal, HEADER_BYTES).size());
+        journal.close();
+
+        assertTrue(new File(directory, "journal.1.bin").exists());
+        assertFalse(new File(directory, "journal.0.bin").exists());
+        journal = KillJournal.open(directory);
+        assertEquals(1, journal.getCheckpointId());
+        assertEquals(tail, replay(journal, journal.getCheckpointOffset()));
+        assertEquals(record(KillJournal.TYPE_SLAYER_TASK, 42, base + 3_000, 150), replay(journal, HEADER_BYTES).get(0));
+        journal.close();
+    }
+
+    @Test
+    public void compactionFoldsOldGpForNpcsWithKillsLeft() throws Exception
+    {
+        File directory = folder.newFolder();
+        long cutoff = base + 60_000;
+        KillJournal journal = KillJournal.open(directory);
+        journal.append(KillJournal.TYPE_KILL, 0, base + 1_000, 0);
+        journal.append(KillJournal.TYPE_GP, 0, base + 1_000, 100);
+        journal.append(KillJournal.TYPE_GP, 1, base + 2_000, 50);
+        journal.append(KillJournal.TYPE_GP, 0, base + 3_000, 200);
+        journal.append(KillJournal.TYPE_KILL, 0, base + 120_000, 0);
+        long mark = journal.getAppendedCount();
+        journal.append(KillJournal.TYPE_GP, 0, base + 4_000, 400);
+        journal.append(KillJournal.TYPE_RESET, 1, base + 5_000, 0);
+        journal.append(KillJournal.TYPE_KILL, 0, base + 121_000, 0);
+        journal.markCheckpoint(1, mark);
+
+        journal.compact(cutoff);
+
+        // The checkpoint already holds the GP folded ahead of it, so the tail keeps its own
+        // GP and the reset it must still apply; NPC 1 has no kills left and loses its GP
+        List<String> tail = Arrays.asList(
+            record(KillJournal.TYPE_GP, 0, base + 4_000, 400),
+            record(KillJournal.TYPE_RESET, 1, base + 5_000, 0),
+            record(KillJournal.TYPE_KILL, 0, base + 121_000, 0));
+        assertEquals(HEADER_BYTES + 2 * KillJournal.RECORD_BYTES, journal.getCheckpointOffset());
+        assertEquals(tail, replay(journal, journal.getCheckpointOffset()));
+        assertEquals(Arrays.asList(
+            record(KillJournal.TYPE_GP, 0, base + 3_000, 300),
+            record(KillJournal.TYPE_KILL, 0, base + 120_000, 0)), replay(journal, HEADER_BYTES).subList(0, 2));
+
+        // Compacting again changes nothing
+        journal.compact(cutoff);
+        assertFalse(new File(directory, "journal.2.bin").exists());
+        assertEquals(5, replay(journal, HEADER_BYTES).size());
+        journal.close();
+    }
+
+    @Test
+    public void snapshotKeepsItsRecordsUntilTheJournalCloses() throws Exception
+    {
+        File directory = folder.newFolder();
+        KillJournal journal = KillJournal.open(directory);
+        journal.append(KillJournal.TYPE_KILL, 0, base + 1_000, 0);
+        journal.append(KillJournal.TYPE_GP, 0, base + 120_000, 300);
+        List<String> expected = Arrays.asList(
+            record(KillJournal.TYPE_KILL, 0, base + 1_000, 0),
+            record(KillJournal.TYPE_GP, 0, base + 120_000, 300));
+
+        try (KillJournal.Snapshot snapshot = journal.snapshot())
+        {
+            // Neither new records nor a compaction change what the snapshot reads
+            journal.append(KillJournal.TYPE_KILL, 0, base + 121_000, 0);
+            journal.flush();
+            journal.compact(base + 60_000);
+            assertTrue(new File(directory, "journal.1.bin").exists());
+            assertEquals(expected, replay(snapshot));
+
+            journal.close();
+            try
+            {
+                replay(snapshot);
+                fail("Snapshot was read after the journal closed");
+            }
+            catch (IOException e)
+            {
+                // Closing cancels it
+            }
+        }
+    }
+
+    private static List<String> replay(KillJournal journal, int fromOffset)
+    {
+        List<String> records = new ArrayList<>();
+        journal.replay(fromOffset, (type, key, epochMillis, value) -> records.add(record(type, key, epochMillis, value)));
+        return records;
+    }
+
+    private static List<String> replay(KillJournal.Snapshot snapshot) throws IOException
+    {
+        List<String> records = new ArrayList<>();
+        snapshot.replay((type, key, epochMillis, value) -> records.add(record(type, key, epochMillis, value)));
+        return records;
+    }
+
+    private static String record(int type, int key, long epochMillis, long value)
+    {
+        return type + ":" + key + "@" + epochMillis + "=" + value;
+    }
+}
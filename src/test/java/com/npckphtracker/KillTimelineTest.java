@@ -0,0 +1,171 @@
+package com.npckphtracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KillTimelineTest
+{
+    private static final int MINUTE = TickClock.TICKS_PER_MINUTE;
+    private static final int HOUR = TickClock.TICKS_PER_HOUR;
+
+    @Test
+    public void countsExactlyWithinTheLastHour()
+    {
+        KillTimeline timeline = new KillTimeline();
+        for (int minute = 0; minute < 60; minute++)
+        {
+            timeline.add(minute * MINUTE + 30);
+        }
+
+        int[] counts = new int[NpcStats.BREAKDOWN_WINDOWS.length];
+        timeline.countSince(60 * MINUTE, NpcStats.BREAKDOWN_WINDOWS, counts);
+        assertEquals(5, counts[0]);
+        assertEquals(15, counts[1]);
+        assertEquals(60, counts[2]);
+        assertEquals(60, timeline.getTotal());
+        assertEquals(60, timeline.getBucketCount());
+    }
+
+    @Test
+    public void foldsOlderMinutesIntoTenMinuteBuckets()
+    {
+        KillTimeline timeline = threeHoursOfKills();
+
+        // The last hour is still held in minute buckets
+        assertEquals(180, timeline.getTotal());
+        assertEquals(5, timeline.countSince(175 * MINUTE));
+        assertEquals(15, timeline.countSince(165 * MINUTE));
+        assertEquals(60, timeline.countSince(120 * MINUTE));
+        // Two hours reach into the ten-minute buckets on a bucket edge
+        assertEquals(120, timeline.countSince(60 * MINUTE));
+        // and half of the ten-minute bucket from minute 60 falls inside this window
+        assertEquals(115, timeline.countSince(65 * MINUTE));
+        assertEquals(180, timeline.countSince(0));
+        // 70 minute buckets and 11 ten-minute buckets for minutes 0 to 109
+        assertEquals(81, timeline.getBucketCount());
+    }
+
+    @Test
+    public void foldsOlderBucketsIntoHours()
+    {
+        KillTimeline timeline = new KillTimeline();
+        List<Integer> kills = new ArrayList<>();
+        for (int tick = 0; tick < 3 * 24 * HOUR; tick += 7 * MINUTE)
+        {
+            timeline.add(tick);
+            kills.add(tick);
+        }
+        int now = 3 * 24 * HOUR;
+
+        assertEquals(kills.size(), timeline.getTotal());
+        assertEquals(kills.size(), timeline.countSince(0));
+        for (int hours : new int[]{1, 6, 24, 36, 48})
+        {
+            int since = now - hours * HOUR;
+            long expected = kills.stream().filter(tick -> tick >= since).count();
+            // Kills are evenly spread, so a share of a straddling bucket is within a kill
+            assertEquals(expected, timeline.countSince(since), 1.0);
+        }
+    }
+
+    @Test
+    public void expiresBucketsBeforeTheCutoff()
+    {
+        KillTimeline timeline = threeHoursOfKills();
+
+        // The ten-minute bucket from minute 60 straddles the cutoff and keeps the share after it
+        timeline.expireBefore(65 * MINUTE);
+        assertEquals(115, timeline.getTotal());
+        assertEquals(115, timeline.countSince(60 * MINUTE));
+        assertEquals(113, timeline.countSince(67 * MINUTE));
+        assertEquals(65 * MINUTE, timeline.getFirstBucketTick());
+        assertEquals(70 * MINUTE, timeline.getFirstBucketEndTick());
+
+        timeline.expireBefore(150 * MINUTE);
+        assertEquals(30, timeline.getTotal());
+        assertEquals(150 * MINUTE, timeline.getFirstBucketTick());
+        assertEquals(151 * MINUTE, timeline.getFirstBucketEndTick());
+
+        timeline.expireBefore(180 * MINUTE);
+        assertTrue(timeline.isEmpty());
+        assertEquals(Integer.MIN_VALUE, timeline.getFirstBucketTick());
+    }
+
+    @Test
+    public void foldsAsTimePassesWithoutKills()
+    {
+        KillTimeline timeline = new KillTimeline();
+        for (int minute = 0; minute < 60; minute++)
+        {
+            timeline.add(minute * MINUTE);
+        }
+
+        // Three hours on, the first hour has moved into ten-minute buckets
+        timeline.advanceTo(3 * HOUR);
+        assertEquals(60, timeline.getTotal());
+        assertEquals(6, timeline.getBucketCount());
+        assertEquals(0, timeline.countSince(2 * HOUR));
+        assertEquals(30, timeline.countSince(30 * MINUTE));
+
+        // and a day later into a single hourly bucket
+        timeline.advanceTo(30 * HOUR);
+        assertEquals(60, timeline.getTotal());
+        assertEquals(1, timeline.getBucketCount());
+        assertEquals(30, timeline.countSince(30 * MINUTE));
+
+        // Shares of an hour trimmed by expiry are over what is left of it
+        timeline.expireBefore(30 * MINUTE);
+        assertEquals(30, timeline.getTotal());
+        assertEquals(30 * MINUTE, timeline.getFirstBucketTick());
+        assertEquals(15, timeline.countSince(45 * MINUTE));
+
+        // Past a week it falls off the last tier
+        timeline.advanceTo(8 * 24 * HOUR);
+        assertTrue(timeline.isEmpty());
+    }
+
+    @Test
+    public void visitsBucketsOldestFirst()
+    {
+        KillTimeline timeline = threeHoursOfKills();
+        List<int[]> buckets = new ArrayList<>();
+        timeline.forEachBucket((startTick, kills) -> buckets.add(new int[]{startTick, kills}));
+
+        assertEquals(timeline.getBucketCount(), buckets.size());
+        int total = 0;
+        for (int i = 0; i < buckets.size(); i++)
+        {
+            if (i > 0)
+            {
+                assertTrue(buckets.get(i)[0] > buckets.get(i - 1)[0]);
+            }
+            total += buckets.get(i)[1];
+        }
+        assertEquals(180, total);
+        // Ten-minute buckets up to minute 109, then minutes from 110
+        assertEquals(0, buckets.get(0)[0]);
+        assertEquals(10, buckets.get(0)[1]);
+        assertEquals(100 * MINUTE, buckets.get(10)[0]);
+        assertEquals(110 * MINUTE, buckets.get(11)[0]);
+        assertEquals(1, buckets.get(11)[1]);
+    }
+
+    /**
+     * A kill each minute for three hours, leaving the first 110 minutes in
+     * ten-minute buckets.
+     */
+    private static KillTimeline threeHoursOfKills()
+    {
+        KillTimeline timeline = new KillTimeline();
+        for (int minute = 0; minute < 180; minute++)
+        {
+            timeline.add(minute * MINUTE);
+        }
+        return timeline;
+    }
+}
@@ -0,0 +1,719 @@
+package com.npckphtracker;
+
+import com.google.inject.Guice;
+import net.runelite.api.Actor;
+import net.runelite.api.Client;
+import net.runelite.api.InventoryID;
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.NPC;
+import net.runelite.api.Player;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.ActorDeath;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.events.NpcLootReceived;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.game.ItemStack;
+import net.runelite.client.ui.ClientToolbar;
+import net.runelite.client.ui.overlay.OverlayManager;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays a session recorded with Record Sessions through the plugin without
+ * a game client, and reports how fast the events were handled and the stats
+ * the session ends with.
+ *
+ * At full speed the tracker's clock follows the recorded times, so gaps such
+ * as logging out count the same as they did live. In real time each game tick
+ * is delivered when it was recorded. Journal and checkpoint files go to a
+ * temporary directory that is removed afterwards. Several recordings can be
+ * replayed as one session after another through the same files, to see what
+ * the tracker restores after a restart.
+ *
+ * With an allocation budget, allocation tracking is turned on and the replay
+ * fails if the last minute of ticks averaged more than that many kilobytes.
+ *
+ * Run with {@code ./gradlew replay --args="<recording> [--realtime] [--allocation-budget=<KB>]"}.
+ */
+public class SessionReplay implements SessionRecorder.Visitor
+{
+    private static final GameTick GAME_TICK = new GameTick();
+    private static final String BUDGET_OPTION = "--allocation-budget=";
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: SessionReplay <recording> [--realtime] [--allocation-budget=<KB>]");
+            System.exit(1);
+        }
+
+        System.setProperty("java.awt.headless", "true");
+        boolean realTime = false;
+        int allocationBudget = 0;
+        for (int i = 1; i < args.length; i++)
+        {
+            if ("--realtime".equals(args[i]))
+            {
+                realTime = true;
+            }
+            else if (args[i].startsWith(BUDGET_OPTION))
+            {
+                allocationBudget = Integer.parseInt(args[i].substring(BUDGET_OPTION.length()));
+            }
+        }
+
+        Result result = replay(new File(args[0]), realTime, allocationBudget);
+        System.out.print(result.report());
+        if (allocationBudget > 0)
+        {
+            result.assertWithinAllocationBudget(allocationBudget);
+        }
+        System.exit(0);
+    }
+
+    static Result replay(File recording, boolean realTime) throws Exception
+    {
+        return replay(recording, realTime, 0);
+    }
+
+    /**
+     * Replays a recording, tracking allocations when given a budget in
+     * kilobytes per tick.
+     */
+    static Result replay(File recording, boolean realTime, int allocationBudget) throws Exception
+    {
+        SessionReplay replay = new SessionReplay(realTime, allocationBudget);
+        SessionRecorder.read(recording, replay);
+        Path directory = Files.createTempDirectory("npc-kph-replay");
+        try
+        {
+            return replay.run(directory.toFile(), System.currentTimeMillis());
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Replays recordings at full speed as consecutive sessions sharing one
+     * journal, each starting {@code offlineMillis} after the last one ended,
+     * and reports the stats the last session ends with.
+     */
+    static Result replaySessions(long offlineMillis, File... recordings) throws Exception
+    {
+        Path directory = Files.createTempDirectory("npc-kph-replay");
+        try
+        {
+            Result result = null;
+            long originEpochMillis = System.currentTimeMillis();
+            for (File recording : recordings)
+            {
+                SessionReplay replay = new SessionReplay(false, 0);
+                SessionRecorder.read(recording, replay);
+                result = replay.run(directory.toFile(), originEpochMillis);
+                originEpochMillis += TimeUnit.NANOSECONDS.toMillis(replay.virtualNanos) + offlineMillis;
+            }
+            return result;
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+
+    /**
+     * One recorded event, decoded ahead of time so replaying measures the
+     * plugin rather than the file.
+     */
+    private static final class Event
+    {
+        // Recorded time of a game tick, or -1 for events within a tick
+        private final int elapsedMillis;
+        private final Runnable action;
+
+        private Event(int elapsedMillis, Runnable action)
+        {
+            this.elapsedMillis = elapsedMillis;
+            this.action = action;
+        }
+    }
+
+    static final class Result
+    {
+        private final int events;
+        private final long nanos;
+        private final Map<String, NpcStats> stats;
+        private final SlayerTaskData slayerTask;
+        private final String timeEstimate;
+        private final long[] allocatedBytes;
+
+        private Result(int events, long nanos, Map<String, NpcStats> stats, SlayerTaskData slayerTask,
+            String timeEstimate, long[] allocatedBytes)
+        {
+            this.events = events;
+            this.nanos = nanos;
+            this.stats = stats;
+            this.slayerTask = slayerTask;
+            this.timeEstimate = timeEstimate;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        int getEvents()
+        {
+            return events;
+        }
+
+        double getEventsPerSecond()
+        {
+            return nanos == 0 ? 0.0 : events / (nanos / 1e9);
+        }
+
+        /**
+         * Final stats by NPC name, for every NPC with kills.
+         */
+        Map<String, NpcStats> getStats()
+        {
+            return stats;
+        }
+
+        SlayerTaskData getSlayerTask()
+        {
+            return slayerTask;
+        }
+
+        /**
+         * Slayer task time estimate as the overlay last showed it.
+         */
+        String getTimeEstimate()
+        {
+            return timeEstimate;
+        }
+
+        /**
+         * Average bytes allocated per tick by each handler over the last
+         * minute of the replay, or null when allocations were not tracked.
+         */
+        long[] getAllocatedBytes()
+        {
+            return allocatedBytes;
+        }
+
+        /**
+         * Fails when the steady-state allocation per tick exceeds the budget.
+         */
+        void assertWithinAllocationBudget(int budgetKilobytes)
+        {
+            if (allocatedBytes == null)
+            {
+                throw new AssertionError("Allocations were not tracked");
+            }
+
+            long total = HandlerTimings.totalBytes(allocatedBytes);
+            if (total > budgetKilobytes * 1024L)
+            {
+                throw new AssertionError(String.format("Allocated %d bytes per tick, over the %d KB budget%n%s",
+                    total, budgetKilobytes, allocationReport()));
+            }
+        }
+
+        String report()
+        {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("Replayed %d events in %.3f s (%.0f events/s)%n",
+                events, nanos / 1e9, getEventsPerSecond()));
+            for (Map.Entry<String, NpcStats> entry : stats.entrySet())
+            {
+                NpcStats npc = entry.getValue();
+                report.append(String.format("%s: %d kills, %.1f KPH, %.1f recent KPH, %d GP, %.0f GP/h%n",
+                    entry.getKey(), npc.getKillCount(), npc.getKillsPerHour(), npc.getRecentKillsPerHour(),
+                    npc.getTotalGpGained(), npc.getGpPerHour()));
+            }
+            if (slayerTask != null)
+            {
+                report.append(String.format("Slayer task: %s, %d of %d remaining%n",
+                    slayerTask.getTaskName(), slayerTask.getRemaining(), slayerTask.getOriginalAmount()));
+            }
+            if (allocatedBytes != null)
+            {
+                report.append(allocationReport());
+            }
+            return report.toString();
+        }
+
+        private String allocationReport()
+        {
+            StringBuilder report = new StringBuilder(String.format("Allocated per tick: %d bytes%n",
+                HandlerTimings.totalBytes(allocatedBytes)));
+            for (HandlerTimings.Handler handler : HandlerTimings.Handler.values())
+            {
+                report.append(String.format("  %s: %d bytes%n", handler.getLabel(), allocatedBytes[handler.ordinal()]));
+            }
+            return report.toString();
+        }
+    }
+
+    private final boolean realTime;
+    private final int allocationBudget;
+    private final Map<String, String> settings = new HashMap<>();
+    private final Map<Integer, Integer> varps = new HashMap<>();
+    // Prices in the order the plugin looked them up; the last one is kept once the rest are used
+    private final Map<Integer, ArrayDeque<Integer>> prices = new HashMap<>();
+    private final List<Event> events = new ArrayList<>();
+    private final Player player;
+    private final Client client;
+    private boolean started;
+    private boolean startedLoggedIn;
+
+    // Game state the fakes report while replaying
+    private boolean loggedIn;
+    private int clientTick;
+    private long virtualNanos;
+    private ItemContainer inventory;
+    private Actor playerTarget;
+    private NpcKphTrackerPlugin plugin;
+
+    private SessionReplay(boolean realTime, int allocationBudget)
+    {
+        this.realTime = realTime;
+        this.allocationBudget = allocationBudget;
+
+        // Client and actors are plain proxies rather than mocks, which would
+        // cost more per call than the plugin code being measured
+        player = fake(Player.class, (method, args) -> "getInteracting".equals(method) ? playerTarget : null);
+        client = fake(Client.class, (method, args) ->
+        {
+            switch (method)
+            {
+                case "getTickCount":
+                    return clientTick;
+                case "getLocalPlayer":
+                    return loggedIn ? player : null;
+                case "getItemContainer":
+                    return inventory;
+                case "getVarpValue":
+                    return args[0] instanceof Integer ? varps.getOrDefault((Integer) args[0], 0) : 0;
+                case "isClientThread":
+                    return true;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private Result run(File directory, long originEpochMillis) throws Exception
+    {
+        if (!started)
+        {
+            throw new IOException("Recording has no session start");
+        }
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try
+        {
+            TickClock clock = realTime ? new TickClock() : new TickClock(() -> virtualNanos, originEpochMillis);
+            plugin = new NpcKphTrackerPlugin(clock, directory);
+            inject(executor);
+
+            loggedIn = startedLoggedIn;
+            plugin.startUp();
+            loggedIn = true;
+
+            long start = System.nanoTime();
+            for (Event event : events)
+            {
+                if (realTime && event.elapsedMillis >= 0)
+                {
+                    long wait = start + TimeUnit.MILLISECONDS.toNanos(event.elapsedMillis) - System.nanoTime();
+                    if (wait > 0)
+                    {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                event.action.run();
+            }
+            long nanos = System.nanoTime() - start;
+
+            Map<String, NpcStats> stats = new LinkedHashMap<>();
+            NpcTrackingView view = plugin.getTrackingView();
+            for (int key = 0; key < view.size(); key++)
+            {
+                NpcStats npc = view.getStats(key);
+                if (npc != null && npc.getKillCount() > 0)
+                {
+                    stats.put(view.getName(key), npc);
+                }
+            }
+            Result result = new Result(events.size(), nanos, stats, plugin.getCurrentSlayerTask(),
+                plugin.getEstimatedTimeRemaining(), plugin.getTimings().getAverageAllocatedBytes());
+
+            plugin.shutDown();
+            return result;
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException
+    {
+        try (Stream<Path> files = Files.walk(directory))
+        {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private void inject(ScheduledExecutorService executor)
+    {
+        NpcKphTrackerConfig config = new NpcKphTrackerConfig()
+        {
+            @Override
+            public boolean autoTrackSlayerTask()
+            {
+                String value = settings.get("autoTrackSlayerTask");
+                return value != null ? Boolean.parseBoolean(value) : NpcKphTrackerConfig.super.autoTrackSlayerTask();
+            }
+
+            @Override
+            public boolean autoTrackLastKilled()
+            {
+                String value = settings.get("autoTrackLastKilled");
+                return value != null ? Boolean.parseBoolean(value) : NpcKphTrackerConfig.super.autoTrackLastKilled();
+            }
+
+            @Override
+            public int dataRetentionHours()
+            {
+                String value = settings.get("dataRetentionHours");
+                return value != null ? Integer.parseInt(value) : NpcKphTrackerConfig.super.dataRetentionHours();
+            }
+
+            @Override
+            public int recentTimeMinutes()
+            {
+                String value = settings.get("recentTimeMinutes");
+                return value != null ? Integer.parseInt(value) : NpcKphTrackerConfig.super.recentTimeMinutes();
+            }
+
+            @Override
+            public boolean useRecentKphForEstimate()
+            {
+                String value = settings.get("useRecentKphForEstimate");
+                return value != null ? Boolean.parseBoolean(value) : NpcKphTrackerConfig.super.useRecentKphForEstimate();
+            }
+
+            @Override
+            public boolean trackAllocations()
+            {
+                return allocationBudget > 0;
+            }
+
+            @Override
+            public int allocationBudget()
+            {
+                return allocationBudget > 0 ? allocationBudget : NpcKphTrackerConfig.super.allocationBudget();
+            }
+
+            @Override
+            public GpTrackingMode gpTrackingMode()
+            {
+                String value = settings.get("gpTrackingMode");
+                return value != null ? GpTrackingMode.valueOf(value) : NpcKphTrackerConfig.super.gpTrackingMode();
+            }
+
+            @Override
+            public RateMode rateMode()
+            {
+                String value = settings.get("rateMode");
+                return value != null ? RateMode.valueOf(value) : NpcKphTrackerConfig.super.rateMode();
+            }
+
+            @Override
+            public int paceHalfLifeMinutes()
+            {
+                String value = settings.get("paceHalfLifeMinutes");
+                return value != null ? Integer.parseInt(value) : NpcKphTrackerConfig.super.paceHalfLifeMinutes();
+            }
+
+            @Override
+            public int gpPaceHalfLifeMinutes()
+            {
+                String value = settings.get("gpPaceHalfLifeMinutes");
+                return value != null ? Integer.parseInt(value) : NpcKphTrackerConfig.super.gpPaceHalfLifeMinutes();
+            }
+
+            @Override
+            public boolean showLeaderboard()
+            {
+                String value = settings.get("showLeaderboard");
+                return value != null ? Boolean.parseBoolean(value) : NpcKphTrackerConfig.super.showLeaderboard();
+            }
+
+            @Override
+            public int leaderboardSize()
+            {
+                String value = settings.get("leaderboardSize");
+                return value != null ? Integer.parseInt(value) : NpcKphTrackerConfig.super.leaderboardSize();
+            }
+
+            @Override
+            public LeaderboardMetric leaderboardMetric()
+            {
+                String value = settings.get("leaderboardMetric");
+                return value != null ? LeaderboardMetric.valueOf(value) : NpcKphTrackerConfig.super.leaderboardMetric();
+            }
+        };
+
+        // Only reached on price cache misses and from the panel, so mocks are fine here
+        ItemManager itemManager = mock(ItemManager.class);
+        when(itemManager.getItemPrice(anyInt())).thenAnswer(invocation -> nextPrice(invocation.getArgument(0)));
+        ClientThread clientThread = mock(ClientThread.class);
+        Answer<Void> runNow = invocation ->
+        {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        };
+        doAnswer(runNow).when(clientThread).invoke(any(Runnable.class));
+        doAnswer(runNow).when(clientThread).invokeLater(any(Runnable.class));
+
+        NpcKphTrackerOverlay overlay = new NpcKphTrackerOverlay(plugin::getOverlayViewModel, plugin.getTimings());
+        HandlerTimingsOverlay timingsOverlay = new HandlerTimingsOverlay(plugin.getTimings());
+        Guice.createInjector(binder ->
+        {
+            binder.bind(Client.class).toInstance(client);
+            binder.bind(NpcKphTrackerConfig.class).toInstance(config);
+            binder.bind(NpcKphTrackerOverlay.class).toInstance(overlay);
+            binder.bind(HandlerTimingsOverlay.class).toInstance(timingsOverlay);
+            binder.bind(ItemManager.class).toInstance(itemManager);
+            binder.bind(ClientThread.class).toInstance(clientThread);
+            binder.bind(OverlayManager.class).toInstance(mock(OverlayManager.class));
+            binder.bind(ClientToolbar.class).toInstance(mock(ClientToolbar.class));
+            binder.bind(ScheduledExecutorService.class).toInstance(executor);
+        }).injectMembers(plugin);
+    }
+
+    private int nextPrice(int itemId)
+    {
+        ArrayDeque<Integer> recorded = prices.get(itemId);
+        if (recorded == null)
+        {
+            return 0;
+        }
+        return recorded.size() > 1 ? recorded.poll() : recorded.peek();
+    }
+
+    @Override
+    public void onConfig(String key, String value)
+    {
+        if (!started)
+        {
+            settings.put(key, value);
+            return;
+        }
+
+        ConfigChanged changed = new ConfigChanged();
+        changed.setGroup(NpcKphTrackerConfig.GROUP);
+        changed.setKey(key);
+        changed.setNewValue(value);
+        events.add(new Event(-1, () ->
+        {
+            // A setting reset to its default is recorded as null
+            if ("null".equals(value))
+            {
+                settings.remove(key);
+            }
+            else
+            {
+                settings.put(key, value);
+            }
+            plugin.onConfigChanged(changed);
+        }));
+    }
+
+    @Override
+    public void onStarted(boolean loggedIn)
+    {
+        started = true;
+        startedLoggedIn = loggedIn;
+    }
+
+    @Override
+    public void onGameTick(int clientTick, int elapsedMillis)
+    {
+        events.add(new Event(elapsedMillis, () ->
+        {
+            this.clientTick = clientTick;
+            virtualNanos = TimeUnit.MILLISECONDS.toNanos(elapsedMillis);
+            plugin.onGameTick(GAME_TICK);
+        }));
+    }
+
+    @Override
+    public void onNpcDeath(int npcId, String name, int tile, boolean npcInteracting, boolean playerInteracting)
+    {
+        WorldPoint location = unpackTile(tile);
+        NPC npc = fake(NPC.class, (method, args) ->
+        {
+            switch (method)
+            {
+                case "getId":
+                    return npcId;
+                case "getName":
+                    return name;
+                case "getWorldLocation":
+                    return location;
+                case "getInteracting":
+                    return npcInteracting ? player : null;
+                default:
+                    return null;
+            }
+        });
+
+        ActorDeath death = new ActorDeath(npc);
+        events.add(new Event(-1, () ->
+        {
+            playerTarget = playerInteracting ? npc : null;
+            plugin.onActorDeath(death);
+        }));
+    }
+
+    @Override
+    public void onInventory(int[] itemIds, int[] quantities)
+    {
+        Item[] items = new Item[itemIds.length];
+        for (int i = 0; i < items.length; i++)
+        {
+            items[i] = new Item(itemIds[i], quantities[i]);
+        }
+        ItemContainer container = fake(ItemContainer.class, (method, args) ->
+        {
+            switch (method)
+            {
+                case "getItems":
+                    return items;
+                case "getId":
+                    return InventoryID.INVENTORY.getId();
+                default:
+                    return null;
+            }
+        });
+
+        if (!started)
+        {
+            inventory = container;
+            return;
+        }
+
+        ItemContainerChanged changed = new ItemContainerChanged(InventoryID.INVENTORY.getId(), container);
+        events.add(new Event(-1, () ->
+        {
+            inventory = container;
+            plugin.onItemContainerChanged(changed);
+        }));
+    }
+
+    @Override
+    public void onLoot(int tile, int[] itemIds, int[] quantities)
+    {
+        WorldPoint location = unpackTile(tile);
+        NPC npc = fake(NPC.class, (method, args) -> "getWorldLocation".equals(method) ? location : null);
+        List<ItemStack> items = new ArrayList<>();
+        for (int i = 0; i < itemIds.length; i++)
+        {
+            items.add(new ItemStack(itemIds[i], quantities[i]));
+        }
+
+        NpcLootReceived loot = new NpcLootReceived(npc, items);
+        events.add(new Event(-1, () -> plugin.onNpcLootReceived(loot)));
+    }
+
+    @Override
+    public void onVarp(int varpId, int value)
+    {
+        if (!started)
+        {
+            varps.put(varpId, value);
+            return;
+        }
+
+        VarbitChanged changed = new VarbitChanged();
+        changed.setVarpId(varpId);
+        changed.setValue(value);
+        events.add(new Event(-1, () ->
+        {
+            varps.put(varpId, value);
+            plugin.onVarbitChanged(changed);
+        }));
+    }
+
+    @Override
+    public void onPrice(int itemId, int price)
+    {
+        prices.computeIfAbsent(itemId, id -> new ArrayDeque<>()).add(price);
+    }
+
+    private static WorldPoint unpackTile(int tile)
+    {
+        return new WorldPoint(tile >> 14 & 0x3FFF, tile & 0x3FFF, tile >>> 28);
+    }
+
+    /**
+     * Implements an API interface with the given answers by method name, and
+     * zero, false or null for everything else.
+     */
+    private static <T> T fake(Class<T> type, BiFunction<String, Object[], Object> answers)
+    {
+        Object fake = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Fake" + type.getSimpleName();
+                default:
+                    Object answer = answers.apply(method.getName(), args);
+                    if (answer != null || !method.getReturnType().isPrimitive() || method.getReturnType() == void.class)
+                    {
+                        return answer;
+                    }
+                    return Array.get(Array.newInstance(method.getReturnType(), 1), 0);
+            }
+        });
+        return type.cast(fake);
+    }
+}
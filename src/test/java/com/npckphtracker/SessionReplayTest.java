@@ -0,0 +1,178 @@
+package com.npckphtracker;
+
+import net.runelite.api.Item;
+import net.runelite.api.ItemID;
+import net.runelite.api.VarPlayer;
+import net.runelite.api.coords.WorldPoint;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeNotNull;
+
+public class SessionReplayTest
+{
+    private static final int ABYSSAL_DEMONS = 42;
+    private static final int ABYSSAL_DEMON_ID = 415;
+    private static final int GOBLIN_ID = 3029;
+    // Steady-state allocation allowed per game tick, in kilobytes
+    private static final int ALLOCATION_BUDGET = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysSlayerTaskWithInventoryGp() throws Exception
+    {
+        SessionReplay.Result result = SessionReplay.replay(recordSlayerTask(), false);
+
+        assertEquals(2 + 601 + 60 * 2 + 6, result.getEvents());
+        assertEquals(1, result.getStats().size());
+        NpcStats demons = result.getStats().get("Abyssal demon");
+        assertNotNull(demons);
+        assertEquals(60, demons.getKillCount());
+        assertEquals(60_000, demons.getTotalGpGained());
+        assertEquals(600.0, demons.getKillsPerHour(), 1.0);
+        // Kills every 10 ticks all the way through, so the smoothed pace agrees
+        assertEquals(600.0, demons.getKillPacePerHour(), 30.0);
+        // Every gap is 10 ticks, which the gap histogram holds exactly
+        assertEquals(10, demons.getGapTicks(0));
+        assertEquals(10, demons.getGapTicks(NpcStats.GAP_PERCENTILES.length - 1));
+        assertEquals(10, demons.getWorstGapTicks());
+        assertEquals(40, result.getSlayerTask().getRemaining());
+        // 40 kills at one every 10 ticks, with the 80% interval of a Poisson process around it
+        assertEquals("4m (3m - 5m)", result.getTimeEstimate());
+    }
+
+    @Test
+    public void restartDoesNotCountTimeOffline() throws Exception
+    {
+        SessionReplay.Result result = SessionReplay.replaySessions(TimeUnit.HOURS.toMillis(2),
+            recordDemonKills(30, 100), recordDemonKills(10, 70));
+
+        NpcStats demons = result.getStats().get("Abyssal demon");
+        assertNotNull(demons);
+        assertEquals(40, demons.getKillCount());
+        // Total KPH is over this session's kills, a kill every 10 ticks, not the two hours offline
+        assertEquals(600.0, demons.getKillsPerHour(), 1.0);
+        // Only the gaps between this session's kills, not the two hours offline
+        assertEquals(10, demons.getGapTicks(NpcStats.GAP_PERCENTILES.length - 1));
+        assertEquals(10, demons.getWorstGapTicks());
+        assertEquals(60, result.getSlayerTask().getRemaining());
+        assertEquals("6m (4m - 10m)", result.getTimeEstimate());
+    }
+
+    @Test
+    public void forecastLeavesOutEarlierSessions() throws Exception
+    {
+        // Two sessions hours apart are restored before the third
+        SessionReplay.Result result = SessionReplay.replaySessions(TimeUnit.HOURS.toMillis(3),
+            recordDemonKills(30, 100), recordDemonKills(30, 70), recordDemonKills(10, 40));
+
+        assertEquals(70, result.getStats().get("Abyssal demon").getKillCount());
+        assertEquals(30, result.getSlayerTask().getRemaining());
+        // A kill every 10 ticks this session, however long the client was closed before it
+        assertEquals("3m (2m - 5m)", result.getTimeEstimate());
+    }
+
+    @Test
+    public void replaysSettingsChangedWhileRunning() throws Exception
+    {
+        int tile = RecentDeaths.packTile(new WorldPoint(1670, 10090, 0));
+        int retentionChange = TickClock.TICKS_PER_HOUR + 1_500;
+        SessionRecorder recorder = SessionRecorder.create(folder.newFolder());
+        recorder.recordConfig("dataRetentionHours", 1);
+        recorder.recordStarted(true);
+        for (int tick = 1; tick <= retentionChange + 100; tick++)
+        {
+            recorder.recordGameTick(tick);
+            if (tick == retentionChange)
+            {
+                recorder.recordConfig("dataRetentionHours", 2);
+            }
+            if (tick % 10 == 0 && (tick <= 1_000 || tick > retentionChange))
+            {
+                recorder.recordNpcDeath(ABYSSAL_DEMON_ID, "Abyssal demon", tile, true, true);
+            }
+        }
+        recorder.close();
+
+        SessionReplay.Result result = SessionReplay.replay(recorder.getFile(), false);
+
+        // The first kills expired under the one hour retention before it was raised
+        assertEquals(10, result.getStats().get("Abyssal demon").getKillCount());
+    }
+
+    @Test
+    public void staysWithinAllocationBudget() throws Exception
+    {
+        SessionReplay.Result result = SessionReplay.replay(recordSlayerTask(), false, ALLOCATION_BUDGET);
+        assumeNotNull((Object) result.getAllocatedBytes());
+
+        result.assertWithinAllocationBudget(ALLOCATION_BUDGET);
+    }
+
+    private File recordSlayerTask() throws Exception
+    {
+        int tile = RecentDeaths.packTile(new WorldPoint(1670, 10090, 0));
+        SessionRecorder recorder = SessionRecorder.create(folder.newFolder());
+        recorder.recordConfig("gpTrackingMode", NpcKphTrackerConfig.GpTrackingMode.INVENTORY);
+        recorder.recordVarp(VarPlayer.SLAYER_TASK_SIZE, 0);
+        recorder.recordVarp(VarPlayer.SLAYER_TASK_CREATURE, 0);
+        recorder.recordInventory(new Item[]{new Item(ItemID.COINS_995, 100)});
+        recorder.recordPrice(ItemID.COINS_995, 1);
+        recorder.recordStarted(true);
+
+        recorder.recordVarp(VarPlayer.SLAYER_TASK_CREATURE, ABYSSAL_DEMONS);
+        recorder.recordVarp(VarPlayer.SLAYER_TASK_SIZE, 100);
+        int coins = 100;
+        for (int tick = 1; tick <= 600; tick++)
+        {
+            recorder.recordGameTick(tick);
+            if (tick % 10 == 0)
+            {
+                recorder.recordNpcDeath(ABYSSAL_DEMON_ID, "Abyssal demon", tile, true, true);
+                coins += 1_000;
+                recorder.recordInventory(new Item[]{new Item(ItemID.COINS_995, coins)});
+            }
+            if (tick % 100 == 0)
+            {
+                // Someone else's kill does not count
+                recorder.recordNpcDeath(GOBLIN_ID, "Goblin", tile, false, false);
+            }
+        }
+        // Stats are published each tick, so the last GP gain shows from the next one
+        recorder.recordGameTick(601);
+        recorder.close();
+        return recorder.getFile();
+    }
+
+    private File recordDemonKills(int kills, int taskSize) throws Exception
+    {
+        int tile = RecentDeaths.packTile(new WorldPoint(1670, 10090, 0));
+        SessionRecorder recorder = SessionRecorder.create(folder.newFolder());
+        recorder.recordVarp(VarPlayer.SLAYER_TASK_SIZE, 0);
+        recorder.recordVarp(VarPlayer.SLAYER_TASK_CREATURE, 0);
+        recorder.recordStarted(true);
+
+        recorder.recordVarp(VarPlayer.SLAYER_TASK_CREATURE, ABYSSAL_DEMONS);
+        recorder.recordVarp(VarPlayer.SLAYER_TASK_SIZE, taskSize);
+
+        int lastTick = kills * 10 + 1;
+        for (int tick = 1; tick <= lastTick; tick++)
+        {
+            recorder.recordGameTick(tick);
+            if (tick % 10 == 0)
+            {
+                recorder.recordNpcDeath(ABYSSAL_DEMON_ID, "Abyssal demon", tile, true, true);
+            }
+        }
+        recorder.close();
+        return recorder.getFile();
+    }
+}
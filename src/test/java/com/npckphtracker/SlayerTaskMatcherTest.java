@@ -0,0 +1,57 @@
+package com.npckphtracker;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlayerTaskMatcherTest
+{
+    private static final int NO_ID = -1;
+
+    private final SlayerCreatureTable table = SlayerCreatureTable.load();
+
+    @Test
+    public void matchesTaskAndAlternativeNames()
+    {
+        assertTrue(matcher(3).matchesName("Giant rat"));
+        assertTrue(matcher(14).matchesName("Hill Giant"));
+        assertTrue(matcher(42).matchesName("Greater abyssal demon"));
+        assertTrue(matcher(105).matchesName("TzKal-Zuk"));
+    }
+
+    @Test
+    public void shortNamesOnlyMatchWholeWords()
+    {
+        assertFalse(matcher(101).matchesName("Serpent shaman"));
+        assertFalse(matcher(101).matchesName("Sentinel"));
+        assertFalse(matcher(3).matchesName("Pirate"));
+        assertFalse(matcher(20).matchesName("Mogre"));
+        assertFalse(matcher(5).matchesName("Terrorbird"));
+        assertFalse(matcher(2).matchesName("Hobgoblin"));
+        // An NPC named like part of the task name is not the task either
+        assertFalse(matcher(120).matchesName("Rat"));
+    }
+
+    @Test
+    public void listedIdsMatchWhateverTheName()
+    {
+        assertTrue(matcher(31).matches(5862, "Unnamed"));
+        assertFalse(matcher(31).matches(NO_ID, "Unnamed"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIdListedForTwoCreatures() throws Exception
+    {
+        String lines = "version=1\n1|Monkeys|monkey|100\n2|Goblins|goblin|100\n";
+        SlayerCreatureTable.parse(new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private SlayerTaskMatcher matcher(int creatureId)
+    {
+        return new SlayerTaskMatcher(table, creatureId);
+    }
+}